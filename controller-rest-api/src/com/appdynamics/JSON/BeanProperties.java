@@ -0,0 +1,187 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The properties JSONObject(Object bean) reads from the objects of one
+ * class, worked out once per class. The class's methods are only searched
+ * for getters the first time an object of the class is serialized. After
+ * that each property is read through a method handle, with no reflective
+ * lookup and no key computation.
+ * <p>
+ * Instances are cached per class in a ClassValue, which does not keep a
+ * class loader alive, and are immutable, so they are shared by all threads.
+ */
+final class BeanProperties {
+
+    private static final ClassValue<BeanProperties> CACHE = new ClassValue<BeanProperties>() {
+        protected BeanProperties computeValue(Class<?> type) {
+            return new BeanProperties(type);
+        }
+    };
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final String[] keys;
+    private final MethodHandle[] getters;
+    private final boolean system;
+
+
+    private BeanProperties(Class<?> klass) {
+        List<String> keys = new ArrayList<String>();
+        List<MethodHandle> getters = new ArrayList<MethodHandle>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+// If klass is a System class then set includeSuperClass to false.
+
+        boolean includeSuperClass = klass.getClassLoader() != null;
+
+        Method[] methods = includeSuperClass
+                ? klass.getMethods()
+                : klass.getDeclaredMethods();
+        for (int i = 0; i < methods.length; i += 1) {
+            Method method = methods[i];
+            String key = getterKey(method);
+            if (key != null) {
+                try {
+                    MethodHandle getter = lookup.unreflect(method);
+                    if (Modifier.isStatic(method.getModifiers())) {
+                        getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                    }
+                    getters.add(getter.asType(GETTER));
+                    keys.add(key);
+                } catch (IllegalAccessException ignore) {
+                }
+            }
+        }
+
+        this.keys = keys.toArray(new String[keys.size()]);
+        this.getters = getters.toArray(new MethodHandle[getters.size()]);
+
+        Package objectPackage = klass.getPackage();
+        String objectPackageName = objectPackage != null
+            ? objectPackage.getName()
+            : "";
+        this.system = objectPackageName.startsWith("java.") ||
+            objectPackageName.startsWith("javax.") ||
+            klass.getClassLoader() == null;
+    }
+
+
+    /**
+     * Get the properties of a class.
+     *
+     * @param klass A class.
+     * @return The properties, computed on the first call for the class.
+     */
+    static BeanProperties of(Class<?> klass) {
+        return CACHE.get(klass);
+    }
+
+
+    /**
+     * Get the number of properties.
+     *
+     * @return The number of properties.
+     */
+    int length() {
+        return this.keys.length;
+    }
+
+
+    /**
+     * Get the key of a property.
+     *
+     * @param index The index of the property.
+     * @return The key.
+     */
+    String key(int index) {
+        return this.keys[index];
+    }
+
+
+    /**
+     * Read a property of an object.
+     *
+     * @param index The index of the property.
+     * @param bean An object of the class.
+     * @return The value of the property.
+     * @throws Throwable Whatever the getter throws.
+     */
+    Object get(int index, Object bean) throws Throwable {
+        return (Object) this.getters[index].invokeExact(bean);
+    }
+
+
+    /**
+     * Determine whether the class comes from the JDK: from a java. or javax.
+     * package or from the bootstrap class loader. wrap() turns objects of
+     * such classes into strings instead of JSONObjects.
+     *
+     * @return true for a JDK class.
+     */
+    boolean isSystemClass() {
+        return this.system;
+    }
+
+
+    /**
+     * Get the key of a public getter: getName and isName give "name", and
+     * getURL gives "URL".
+     *
+     * @return The key, or null if the method is not a getter.
+     */
+    private static String getterKey(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) ||
+                method.getParameterTypes().length != 0) {
+            return null;
+        }
+        String name = method.getName();
+        String key = "";
+        if (name.startsWith("get")) {
+            if ("getClass".equals(name) ||
+                    "getDeclaringClass".equals(name)) {
+                key = "";
+            } else {
+                key = name.substring(3);
+            }
+        } else if (name.startsWith("is")) {
+            key = name.substring(2);
+        }
+        if (key.length() == 0 || !Character.isUpperCase(key.charAt(0))) {
+            return null;
+        }
+        if (key.length() == 1) {
+            key = key.toLowerCase();
+        } else if (!Character.isUpperCase(key.charAt(1))) {
+            key = key.substring(0, 1).toLowerCase() +
+                key.substring(1);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map that holds the members of a JSONObject. Keys and values are kept
+ * in two arrays in insertion order, so iteration order is stable and a
+ * small object costs two short arrays instead of a hash table with one
+ * entry object per member. Up to INDEX_THRESHOLD members are found by
+ * scanning the keys; larger maps add an open addressing index of the
+ * slots, with linear probing.
+ */
+final class CompactMap extends AbstractMap<Object, Object> {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int INDEX_THRESHOLD = 16;
+
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+    private int modCount;
+
+    /**
+     * slot + 1 of each key by hash, 0 for an empty bucket, or null while
+     * the map is small enough to scan.
+     */
+    private int[] index;
+
+    private Set<Object> keySet;
+    private Set<Map.Entry<Object, Object>> entrySet;
+
+
+    CompactMap() {
+        this.keys = new Object[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+    }
+
+
+    public int size() {
+        return this.size;
+    }
+
+
+    public boolean containsKey(Object key) {
+        return this.slot(key) >= 0;
+    }
+
+
+    public Object get(Object key) {
+        int slot = this.slot(key);
+        return slot < 0 ? null : this.values[slot];
+    }
+
+
+    public Object put(Object key, Object value) {
+        int slot = this.slot(key);
+        if (slot >= 0) {
+            Object previous = this.values[slot];
+            this.values[slot] = value;
+            return previous;
+        }
+        if (this.size == this.keys.length) {
+            Object[] grownKeys = new Object[this.size * 2];
+            Object[] grownValues = new Object[this.size * 2];
+            System.arraycopy(this.keys, 0, grownKeys, 0, this.size);
+            System.arraycopy(this.values, 0, grownValues, 0, this.size);
+            this.keys = grownKeys;
+            this.values = grownValues;
+        }
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size += 1;
+        this.modCount += 1;
+        if (this.index != null && this.size * 2 <= this.index.length) {
+            this.insert(this.index, this.size - 1);
+        } else if (this.size > INDEX_THRESHOLD) {
+            this.rebuildIndex();
+        }
+        return null;
+    }
+
+
+    public Object remove(Object key) {
+        int slot = this.slot(key);
+        if (slot < 0) {
+            return null;
+        }
+        Object previous = this.values[slot];
+        this.removeSlot(slot);
+        return previous;
+    }
+
+
+    public void clear() {
+        for (int i = 0; i < this.size; i += 1) {
+            this.keys[i] = null;
+            this.values[i] = null;
+        }
+        this.size = 0;
+        this.index = null;
+        this.modCount += 1;
+    }
+
+
+    public Set<Object> keySet() {
+        if (this.keySet == null) {
+            this.keySet = new AbstractSet<Object>() {
+                public Iterator<Object> iterator() {
+                    return new SlotIterator<Object>() {
+                        Object at(int slot) {
+                            return CompactMap.this.keys[slot];
+                        }
+                    };
+                }
+
+                public int size() {
+                    return CompactMap.this.size;
+                }
+
+                public boolean contains(Object key) {
+                    return CompactMap.this.containsKey(key);
+                }
+            };
+        }
+        return this.keySet;
+    }
+
+
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new AbstractSet<Map.Entry<Object, Object>>() {
+                public Iterator<Map.Entry<Object, Object>> iterator() {
+                    return new SlotIterator<Map.Entry<Object, Object>>() {
+                        Map.Entry<Object, Object> at(final int slot) {
+                            return new SimpleEntry<Object, Object>(
+                                    CompactMap.this.keys[slot], CompactMap.this.values[slot]) {
+                                public Object setValue(Object value) {
+                                    super.setValue(value);
+                                    return CompactMap.this.put(this.getKey(), value);
+                                }
+                            };
+                        }
+                    };
+                }
+
+                public int size() {
+                    return CompactMap.this.size;
+                }
+            };
+        }
+        return this.entrySet;
+    }
+
+
+    /**
+     * Find the slot of a key.
+     *
+     * @return The slot, or -1 if the key is not in the map.
+     */
+    private int slot(Object key) {
+        int hash = hash(key);
+        if (this.index == null) {
+            for (int i = 0; i < this.size; i += 1) {
+                Object k = this.keys[i];
+                if (k == key || (k != null && hash(k) == hash && k.equals(key))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = this.index.length - 1;
+        for (int bucket = spread(hash) & mask; ; bucket = (bucket + 1) & mask) {
+            int slot = this.index[bucket] - 1;
+            if (slot < 0) {
+                return -1;
+            }
+            Object k = this.keys[slot];
+            if (k == key || (k != null && hash(k) == hash && k.equals(key))) {
+                return slot;
+            }
+        }
+    }
+
+
+    /**
+     * Remove a slot, moving the later slots down to keep insertion order.
+     */
+    private void removeSlot(int slot) {
+        int moved = this.size - slot - 1;
+        System.arraycopy(this.keys, slot + 1, this.keys, slot, moved);
+        System.arraycopy(this.values, slot + 1, this.values, slot, moved);
+        this.size -= 1;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+        this.modCount += 1;
+        if (this.index != null) {
+            this.rebuildIndex();
+        }
+    }
+
+
+    private void rebuildIndex() {
+        if (this.size <= INDEX_THRESHOLD) {
+            this.index = null;
+            return;
+        }
+        int capacity = Integer.highestOneBit(this.size * 4);
+        int[] rebuilt = new int[capacity];
+        for (int i = 0; i < this.size; i += 1) {
+            this.insert(rebuilt, i);
+        }
+        this.index = rebuilt;
+    }
+
+
+    private void insert(int[] table, int slot) {
+        int mask = table.length - 1;
+        int bucket = spread(hash(this.keys[slot])) & mask;
+        while (table[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = slot + 1;
+    }
+
+
+    private static int hash(Object key) {
+        return key == null ? 0 : key.hashCode();
+    }
+
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+
+    /**
+     * Iterates over the slots in insertion order, supporting remove.
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = CompactMap.this.modCount;
+
+        abstract T at(int slot);
+
+        public boolean hasNext() {
+            return this.next < CompactMap.this.size;
+        }
+
+        public T next() {
+            if (this.expectedModCount != CompactMap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.next >= CompactMap.this.size) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next += 1;
+            return this.at(this.last);
+        }
+
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            if (this.expectedModCount != CompactMap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            CompactMap.this.removeSlot(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expectedModCount = CompactMap.this.modCount;
+        }
+    }
+}
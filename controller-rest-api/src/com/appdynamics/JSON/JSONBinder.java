@@ -0,0 +1,43 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+/**
+ * A JSONBinder reads one JSON value from a JSONPullParser straight into a
+ * Java object, without building a JSONObject or JSONArray for it first.
+ * Only the fields the object needs are converted; the others are skipped
+ * token by token.
+ *
+ * @param <T> The type of object produced.
+ */
+public interface JSONBinder<T> {
+
+    /**
+     * Read the value whose first token is the current token of the parser.
+     * When the method returns, the current token is the last token of the
+     * value, so that the caller continues with next().
+     *
+     * @param parser A parser positioned on the first token of the value.
+     * @return The object read from the value.
+     * @throws JSONException If the value is not valid JSON or does not have
+     *  the expected shape.
+     */
+    T bind(JSONPullParser parser) throws JSONException;
+}
@@ -0,0 +1,898 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.appdynamics.JSON.JSONPullParser.Token;
+
+/**
+ * A JSONByteParser reads UTF-8 encoded JSON text from a ByteBuffer as the
+ * same sequence of tokens as a JSONPullParser, but works on the bytes
+ * themselves instead of on decoded characters. Structure, numbers and
+ * literals are all ASCII and are read straight from the buffer. A string
+ * is only located while parsing: its bytes are decoded when its text is
+ * requested with getText() or readValue(), so the strings a caller skips
+ * over, or never asks for, are never turned into characters.
+ * <p>
+ * The buffer may be a heap buffer, a direct buffer or a file mapped into
+ * memory, see JSONByteParser(File). The parser reads it in place with
+ * absolute gets and neither copies it nor changes its position.
+ * <p>
+ * Like JSONPullParser, the parser only accepts standard JSON. Escapes are
+ * checked as a string is located; invalid UTF-8 sequences are decoded to
+ * U+FFFD, as new String(bytes, "UTF-8") does.
+ */
+public class JSONByteParser {
+
+    private static final byte IN_OBJECT = 1;
+    private static final byte IN_ARRAY = 2;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int limit;
+    private int position;
+
+    private byte[] stack = new byte[16];
+    private int depth;
+    private boolean rootDone;
+
+    private Token token;
+    private int textStart;
+    private int textEnd;
+    private boolean integral;
+    private char[] text = new char[64];
+    private int textLength = -1;
+    private String textString;
+
+    private SymbolTable symbols;
+    private boolean canonicalValues;
+
+    private final ParserSupport support = new ParserSupport();
+
+
+    /**
+     * Construct a JSONByteParser over the remaining bytes of a buffer, from
+     * its position to its limit. A UTF-8 byte order mark is skipped.
+     *
+     * @param buffer     A buffer of UTF-8 encoded text.
+     */
+    public JSONByteParser(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.start = buffer.position();
+        this.limit = buffer.limit();
+        this.position = this.start;
+        if (this.limit - this.position >= 3 && this.byteAt(this.position) == 0xEF &&
+                this.byteAt(this.position + 1) == 0xBB && this.byteAt(this.position + 2) == 0xBF) {
+            this.position += 3;
+        }
+    }
+
+
+    /**
+     * Construct a JSONByteParser from a byte array.
+     *
+     * @param bytes     UTF-8 encoded text.
+     */
+    public JSONByteParser(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+
+    /**
+     * Construct a JSONByteParser over a file mapped into memory, so that a
+     * large dump is parsed without reading it into the heap. The operating
+     * system pages the file in as the parser reaches it. The mapping stays
+     * valid after the file is closed, which this constructor does before
+     * returning.
+     *
+     * @param file     A file of UTF-8 encoded text, of at most 2GB.
+     * @throws JSONException If the file could not be mapped.
+     */
+    public JSONByteParser(File file) throws JSONException {
+        this(map(file));
+    }
+
+
+    /**
+     * Advance to the next token.
+     *
+     * @return The next token, or null once the root value has been read
+     *  completely and only whitespace remains.
+     * @throws JSONException If the text is not valid JSON.
+     */
+    public Token next() throws JSONException {
+        this.textString = null;
+        this.textLength = -1;
+        int c = this.nextClean();
+
+        if (this.depth == 0) {
+            if (c == -1) {
+                if (this.token != null && !this.rootDone) {
+                    throw this.syntaxError("Unexpected end of input");
+                }
+                return this.token = null;
+            }
+            if (this.rootDone) {
+                throw this.syntaxError("Unexpected text after the end of the root value");
+            }
+            return this.startValue(c);
+        }
+        if (c == -1) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+
+        if (this.stack[this.depth - 1] == IN_OBJECT) {
+            if (this.token == Token.START_OBJECT) {
+                return c == '}' ? this.endContainer(Token.END_OBJECT) : this.fieldName(c);
+            }
+            if (this.token == Token.FIELD_NAME) {
+                if (c != ':') {
+                    throw this.syntaxError("Expected ':' after a field name");
+                }
+                return this.startValue(this.nextClean());
+            }
+            if (c == '}') {
+                return this.endContainer(Token.END_OBJECT);
+            }
+            if (c != ',') {
+                throw this.syntaxError("Expected ',' or '}'");
+            }
+            return this.fieldName(this.nextClean());
+        }
+
+        if (this.token == Token.START_ARRAY) {
+            return c == ']' ? this.endContainer(Token.END_ARRAY) : this.startValue(c);
+        }
+        if (c == ']') {
+            return this.endContainer(Token.END_ARRAY);
+        }
+        if (c != ',') {
+            throw this.syntaxError("Expected ',' or ']'");
+        }
+        return this.startValue(this.nextClean());
+    }
+
+
+    /**
+     * Choose whether the text of short values, like field names, is taken
+     * from the parser's symbol table, so that values repeated across the
+     * objects of a document share one String. Field names are always
+     * canonicalized.
+     *
+     * @param canonicalValues true to canonicalize the text of strings and
+     *  numbers of up to 32 characters.
+     */
+    public void setCanonicalValues(boolean canonicalValues) {
+        this.canonicalValues = canonicalValues;
+    }
+
+
+    /**
+     * Get the current token, the one returned by the last call to next().
+     *
+     * @return The current token, or null before the first call to next()
+     *  and at the end of the input.
+     */
+    public Token getToken() {
+        return this.token;
+    }
+
+
+    /**
+     * Get the number of objects and arrays enclosing the current position.
+     * START_OBJECT and START_ARRAY count the container they open, END_OBJECT
+     * and END_ARRAY no longer count the container they close.
+     *
+     * @return The nesting depth.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+
+    /**
+     * Get the text of the current token: the name of a FIELD_NAME, the
+     * unescaped content of a VALUE_STRING, the literal text of a
+     * VALUE_NUMBER, or "true", "false", "null", "{", "}", "[" or "]". The
+     * bytes of a string are decoded by the first call for the token.
+     *
+     * @return The text of the current token.
+     */
+    public String getText() {
+        if (this.textString == null) {
+            if (this.token == null) {
+                return null;
+            }
+            switch (this.token) {
+            case START_OBJECT:
+                this.textString = "{";
+                break;
+            case END_OBJECT:
+                this.textString = "}";
+                break;
+            case START_ARRAY:
+                this.textString = "[";
+                break;
+            case END_ARRAY:
+                this.textString = "]";
+                break;
+            case VALUE_TRUE:
+                this.textString = "true";
+                break;
+            case VALUE_FALSE:
+                this.textString = "false";
+                break;
+            case VALUE_NULL:
+                this.textString = "null";
+                break;
+            case FIELD_NAME:
+                this.decode();
+                this.textString = this.symbols().get(this.text, this.textLength,
+                        SymbolTable.MAX_KEY_LENGTH);
+                break;
+            default:
+                this.decode();
+                this.textString = this.canonicalValues
+                    ? this.symbols().get(this.text, this.textLength, SymbolTable.MAX_VALUE_LENGTH)
+                    : new String(this.text, 0, this.textLength);
+            }
+        }
+        return this.textString;
+    }
+
+
+    /**
+     * Determine whether the current VALUE_NUMBER has neither a fraction nor
+     * an exponent.
+     *
+     * @return true if the current number is an integer.
+     */
+    public boolean isIntegral() {
+        return this.token == Token.VALUE_NUMBER && this.integral;
+    }
+
+
+    /**
+     * Get the current value as a long. Numbers with a fraction or exponent
+     * are truncated, strings are parsed. Numbers are read from the buffer
+     * directly, without making a String of them.
+     *
+     * @return The long value.
+     * @throws JSONException If the current value is not a number or a string
+     *  holding a number.
+     */
+    public long getLong() throws JSONException {
+        if (this.token == Token.VALUE_NUMBER && this.integral) {
+            return ParserSupport.longValue(this.text, this.textLength);
+        }
+        return (long) this.getDouble();
+    }
+
+
+    /**
+     * Get the current value as an int.
+     *
+     * @return The int value.
+     * @throws JSONException If the current value is not a number or a string
+     *  holding a number.
+     */
+    public int getInt() throws JSONException {
+        return (int) this.getLong();
+    }
+
+
+    /**
+     * Get the current value as a double.
+     *
+     * @return The double value.
+     * @throws JSONException If the current value is not a number or a string
+     *  holding a number.
+     */
+    public double getDouble() throws JSONException {
+        if (this.token == Token.VALUE_NUMBER) {
+            return ParserSupport.doubleValue(this.text, this.textLength);
+        }
+        if (this.token == Token.VALUE_STRING) {
+            try {
+                return Double.parseDouble(this.getText());
+            } catch (NumberFormatException e) {
+                throw this.syntaxError("Not a number: " + this.getText());
+            }
+        }
+        throw this.syntaxError("Expected a number instead of " + this.token);
+    }
+
+
+    /**
+     * Get the current value as a boolean.
+     *
+     * @return The boolean value.
+     * @throws JSONException If the current value is not true, false or a
+     *  string "true" or "false".
+     */
+    public boolean getBoolean() throws JSONException {
+        if (this.token == Token.VALUE_TRUE) {
+            return true;
+        }
+        if (this.token == Token.VALUE_FALSE) {
+            return false;
+        }
+        if (this.token == Token.VALUE_STRING) {
+            if ("true".equalsIgnoreCase(this.getText())) {
+                return true;
+            }
+            if ("false".equalsIgnoreCase(this.getText())) {
+                return false;
+            }
+        }
+        throw this.syntaxError("Expected a boolean instead of " + this.token);
+    }
+
+
+    /**
+     * Get the current value as an object, the way JSONObject.get would
+     * return it: a String, Boolean, Integer, Long, Double, JSONObject.NULL,
+     * or, if the current token is START_OBJECT or START_ARRAY, the whole
+     * JSONObject or JSONArray it opens. In the latter case the parser is
+     * left on the matching END_OBJECT or END_ARRAY.
+     *
+     * @return The current value.
+     * @throws JSONException If the current token is not the start of a value.
+     */
+    public Object readValue() throws JSONException {
+        if (this.token == null) {
+            throw this.syntaxError("No current value");
+        }
+        switch (this.token) {
+        case START_OBJECT:
+            JSONObject object = new JSONObject();
+            while (this.next() != Token.END_OBJECT) {
+                String key = this.getText();
+                this.next();
+                object.put(key, this.readValue());
+            }
+            return object;
+        case START_ARRAY:
+            JSONArray array = new JSONArray();
+            while (this.next() != Token.END_ARRAY) {
+                array.put(this.readValue());
+            }
+            return array;
+        case VALUE_STRING:
+            return this.getText();
+        case VALUE_NUMBER:
+            return ParserSupport.numberValue(this.text, this.textLength, this.integral);
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return JSONObject.NULL;
+        default:
+            throw this.syntaxError("Expected a value instead of " + this.token);
+        }
+    }
+
+
+    /**
+     * If the current token is START_OBJECT or START_ARRAY, skip everything up
+     * to and including the matching END_OBJECT or END_ARRAY, without
+     * decoding anything. Does nothing for other tokens.
+     *
+     * @throws JSONException If the skipped text is not valid JSON.
+     */
+    public void skipChildren() throws JSONException {
+        if (this.token != Token.START_OBJECT && this.token != Token.START_ARRAY) {
+            return;
+        }
+        int target = this.depth - 1;
+        while (this.depth > target) {
+            if (this.next() == null) {
+                throw this.syntaxError("Unexpected end of input");
+            }
+        }
+    }
+
+
+    /**
+     * Advance to the next value selected by a path, skipping everything
+     * else. See nextMatch(JSONPath[]).
+     *
+     * @param path The path to look for.
+     * @return true if the parser is on a selected value, false at the end of
+     *  the input.
+     * @throws JSONException If the text is not valid JSON.
+     */
+    public boolean nextMatch(JSONPath path) throws JSONException {
+        return this.nextMatch(this.support.single(path)) >= 0;
+    }
+
+
+    /**
+     * Advance to the next value selected by any of the paths, skipping
+     * everything else, as JSONPullParser.nextMatch(JSONPath[]) does. Only
+     * the names of the fields the paths can select are decoded, skipped
+     * values are only checked for balanced brackets and terminated strings.
+     *
+     * @param paths At most 32 paths to look for.
+     * @return The index in paths of the path that selected the value, the
+     *  lowest one if several did, or -1 at the end of the input.
+     * @throws JSONException If the text is not valid JSON.
+     */
+    public int nextMatch(JSONPath[] paths) throws JSONException {
+        int all = ParserSupport.all(paths);
+        for (;;) {
+            Token t = this.next();
+            if (t == null) {
+                return -1;
+            }
+
+            int level;
+            switch (t) {
+            case END_OBJECT:
+            case END_ARRAY:
+                continue;
+            case FIELD_NAME:
+                if (this.support.canSelectField(this.depth)) {
+                    this.decode();
+                }
+                if (!this.support.matchField(paths, this.depth, this.text, this.textLength)) {
+                    this.skipFieldValue();
+                }
+                continue;
+            case START_OBJECT:
+            case START_ARRAY:
+                level = this.depth - 1;
+                break;
+            default:
+                level = this.depth;
+            }
+
+            int match = this.support.matchValue(paths, all, level,
+                    level > 0 && this.stack[level - 1] == IN_OBJECT,
+                    t == Token.START_OBJECT || t == Token.START_ARRAY);
+            if (match == ParserSupport.SKIP) {
+                this.skipContainer();
+            } else if (match >= 0) {
+                return match;
+            }
+        }
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     *
+     * @param message The error message.
+     * @return  A JSONException object, suitable for throwing
+     */
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + this.toString());
+    }
+
+
+    /**
+     * Make a printable string of this JSONByteParser.
+     *
+     * @return " at byte {index}"
+     */
+    public String toString() {
+        return " at byte " + (this.position - this.start);
+    }
+
+
+    private static ByteBuffer map(File file) throws JSONException {
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = in.getChannel();
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new JSONException("File too large to map: " + file);
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    private Token startValue(int c) throws JSONException {
+        switch (c) {
+        case '{':
+            this.push(IN_OBJECT);
+            return this.token = Token.START_OBJECT;
+        case '[':
+            this.push(IN_ARRAY);
+            return this.token = Token.START_ARRAY;
+        case '"':
+            this.readString();
+            this.token = Token.VALUE_STRING;
+            break;
+        case 't':
+            this.readLiteral("true");
+            this.token = Token.VALUE_TRUE;
+            break;
+        case 'f':
+            this.readLiteral("false");
+            this.token = Token.VALUE_FALSE;
+            break;
+        case 'n':
+            this.readLiteral("null");
+            this.token = Token.VALUE_NULL;
+            break;
+        case -1:
+            throw this.syntaxError("Unexpected end of input");
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                this.readNumber();
+                this.token = Token.VALUE_NUMBER;
+                break;
+            }
+            throw this.syntaxError("Unexpected character '" + (char) c + "'");
+        }
+        if (this.depth == 0) {
+            this.rootDone = true;
+        }
+        return this.token;
+    }
+
+
+    private Token fieldName(int c) throws JSONException {
+        if (c != '"') {
+            throw this.syntaxError("Expected a field name");
+        }
+        this.readString();
+        return this.token = Token.FIELD_NAME;
+    }
+
+
+    private Token endContainer(Token end) {
+        this.depth -= 1;
+        if (this.depth == 0) {
+            this.rootDone = true;
+        }
+        return this.token = end;
+    }
+
+
+    private void push(byte container) {
+        if (this.depth == this.stack.length) {
+            byte[] grown = new byte[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, grown, 0, this.depth);
+            this.stack = grown;
+        }
+        this.stack[this.depth] = container;
+        this.depth += 1;
+    }
+
+
+    /**
+     * Skip the value of the current field. Strings and containers are
+     * skipped without decoding them, other values are short and read as
+     * usual.
+     */
+    private void skipFieldValue() throws JSONException {
+        if (this.nextClean() != ':') {
+            throw this.syntaxError("Expected ':' after a field name");
+        }
+        int c = this.nextClean();
+        if (c == '{' || c == '[') {
+            this.startValue(c);
+            this.skipContainer();
+        } else {
+            this.startValue(c);
+        }
+    }
+
+
+    /**
+     * Skip the rest of the container the parser has just entered, up to and
+     * including its closing bracket, counting brackets but not decoding
+     * anything.
+     */
+    private void skipContainer() throws JSONException {
+        int nesting = 1;
+        while (this.position < this.limit) {
+            int c = this.byteAt(this.position);
+            this.position += 1;
+            if (c == '"') {
+                this.readString();
+            } else if (c == '{' || c == '[') {
+                nesting += 1;
+            } else if (c == '}' || c == ']') {
+                nesting -= 1;
+                if (nesting == 0) {
+                    if ((c == '}') != (this.stack[this.depth - 1] == IN_OBJECT)) {
+                        throw this.syntaxError("Mismatched '" + (char) c + "'");
+                    }
+                    this.endContainer(c == '}' ? Token.END_OBJECT : Token.END_ARRAY);
+                    return;
+                }
+            }
+        }
+        throw this.syntaxError("Unexpected end of input");
+    }
+
+
+    /**
+     * Locate the rest of a string whose opening quote has been consumed,
+     * checking its escapes but leaving its bytes undecoded.
+     */
+    private void readString() throws JSONException {
+        this.textStart = this.position;
+        int i = this.position;
+        for (;;) {
+            if (i == this.limit) {
+                this.position = i;
+                throw this.syntaxError("Unterminated string");
+            }
+            int c = this.byteAt(i);
+            if (c == '"') {
+                break;
+            }
+            i += 1;
+            if (c == '\\') {
+                this.position = i;
+                i = this.checkEscape();
+            }
+        }
+        this.textEnd = i;
+        this.position = i + 1;
+    }
+
+
+    /**
+     * Check the escape following a backslash at position - 1.
+     *
+     * @return The index after the escape.
+     */
+    private int checkEscape() throws JSONException {
+        if (this.position == this.limit) {
+            throw this.syntaxError("Unterminated string");
+        }
+        int c = this.byteAt(this.position);
+        this.position += 1;
+        switch (c) {
+        case 'b':
+        case 't':
+        case 'n':
+        case 'f':
+        case 'r':
+        case '"':
+        case '\\':
+        case '/':
+            return this.position;
+        case 'u':
+            for (int i = 0; i < 4; i += 1) {
+                if (this.position == this.limit ||
+                        JSONTokener.dehexchar((char) this.byteAt(this.position)) < 0) {
+                    throw this.syntaxError("Illegal unicode escape");
+                }
+                this.position += 1;
+            }
+            return this.position;
+        default:
+            throw this.syntaxError("Illegal escape");
+        }
+    }
+
+
+    /**
+     * Decode the bytes of the current string into the text buffer, unless
+     * that has been done already for this token.
+     */
+    private void decode() {
+        if (this.textLength >= 0) {
+            return;
+        }
+        int i = this.textStart;
+        int end = this.textEnd;
+        if (this.text.length < end - i) {
+            this.text = new char[Math.max(this.text.length * 2, end - i)];
+        }
+        char[] t = this.text;
+        int n = 0;
+
+        // plain ASCII, the common case, is widened byte by byte
+        while (i < end) {
+            int c = this.byteAt(i);
+            if (c >= 0x80 || c == '\\') {
+                break;
+            }
+            t[n] = (char) c;
+            n += 1;
+            i += 1;
+        }
+
+        while (i < end) {
+            int c = this.byteAt(i);
+            i += 1;
+            if (c < 0x80) {
+                if (c == '\\') {
+                    c = this.byteAt(i);
+                    i += 1;
+                    switch (c) {
+                    case 'b':
+                        t[n] = '\b';
+                        break;
+                    case 't':
+                        t[n] = '\t';
+                        break;
+                    case 'n':
+                        t[n] = '\n';
+                        break;
+                    case 'f':
+                        t[n] = '\f';
+                        break;
+                    case 'r':
+                        t[n] = '\r';
+                        break;
+                    case 'u':
+                        int value = 0;
+                        for (int j = 0; j < 4; j += 1) {
+                            value = (value << 4) | JSONTokener.dehexchar((char) this.byteAt(i));
+                            i += 1;
+                        }
+                        t[n] = (char) value;
+                        break;
+                    default:
+                        t[n] = (char) c;
+                    }
+                } else {
+                    t[n] = (char) c;
+                }
+                n += 1;
+            } else {
+                // the second byte of a sequence is checked against the range
+                // that excludes overlong forms and code points above U+10FFFF.
+                // A malformed sequence becomes one U+FFFD for its longest
+                // valid start, and an encoded surrogate one U+FFFD, as the
+                // JDK's decoder does.
+                int needed;
+                int lower = 0x80;
+                int upper = 0xBF;
+                if (c >= 0xC2 && c <= 0xDF) {
+                    needed = 1;
+                } else if (c >= 0xE0 && c <= 0xEF) {
+                    needed = 2;
+                    if (c == 0xE0) {
+                        lower = 0xA0;
+                    }
+                } else if (c >= 0xF0 && c <= 0xF4) {
+                    needed = 3;
+                    if (c == 0xF0) {
+                        lower = 0x90;
+                    } else if (c == 0xF4) {
+                        upper = 0x8F;
+                    }
+                } else {
+                    needed = 0;
+                }
+                int code = c & (0x3F >> needed);
+                int k = 0;
+                while (k < needed && i < end) {
+                    int b = this.byteAt(i);
+                    if (b < lower || b > upper) {
+                        break;
+                    }
+                    code = (code << 6) | (b & 0x3F);
+                    i += 1;
+                    k += 1;
+                    lower = 0x80;
+                    upper = 0xBF;
+                }
+                if (needed == 0 || k < needed ||
+                        (code >= Character.MIN_SURROGATE && code <= Character.MAX_SURROGATE)) {
+                    t[n] = REPLACEMENT;
+                    n += 1;
+                } else if (code < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    t[n] = (char) code;
+                    n += 1;
+                } else {
+                    t[n] = Character.highSurrogate(code);
+                    t[n + 1] = Character.lowSurrogate(code);
+                    n += 2;
+                }
+            }
+        }
+        this.textLength = n;
+    }
+
+
+    /**
+     * Locate a number, the first byte of which has been consumed, widen it
+     * into the text buffer and check that it is a JSON number. Numbers are
+     * short and ASCII, so they are decoded right away for ParserSupport to
+     * check and convert.
+     */
+    private void readNumber() throws JSONException {
+        this.textStart = this.position - 1;
+        this.integral = true;
+        while (this.position < this.limit) {
+            int c = this.byteAt(this.position);
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                this.position += 1;
+                if (c == '.' || c == 'e' || c == 'E') {
+                    this.integral = false;
+                }
+            } else {
+                break;
+            }
+        }
+        this.textEnd = this.position;
+        this.textLength = -1;
+        this.decode();
+        if (!ParserSupport.isNumber(this.text, this.textLength)) {
+            throw this.syntaxError("Malformed number: " + new String(this.text, 0, this.textLength));
+        }
+    }
+
+
+    private SymbolTable symbols() {
+        if (this.symbols == null) {
+            this.symbols = new SymbolTable();
+        }
+        return this.symbols;
+    }
+
+
+    private void readLiteral(String literal) throws JSONException {
+        for (int i = 1; i < literal.length(); i += 1) {
+            if (this.position == this.limit || this.byteAt(this.position) != literal.charAt(i)) {
+                throw this.syntaxError("Expected '" + literal + "'");
+            }
+            this.position += 1;
+        }
+        if (this.position < this.limit) {
+            int c = this.byteAt(this.position);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                throw this.syntaxError("Expected '" + literal + "'");
+            }
+        }
+    }
+
+
+    private int nextClean() {
+        while (this.position < this.limit) {
+            int c = this.byteAt(this.position);
+            this.position += 1;
+            if (c > ' ') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+
+    private int byteAt(int index) {
+        return this.buffer.get(index) & 0xFF;
+    }
+}
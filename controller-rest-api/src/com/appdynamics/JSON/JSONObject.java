@@ -47,11 +47,8 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
@@ -151,7 +148,8 @@ public class JSONObject {
 
 
     /**
-     * The map where the JSONObject's properties are kept.
+     * The map where the JSONObject's properties are kept, in the order they
+     * were added.
      */
     private final Map map;
 
@@ -164,12 +162,17 @@ public class JSONObject {
      */
     public static final Object NULL = new Null();
 
+    /**
+     * Indentation is written from this string a slice at a time.
+     */
+    private static final String SPACES = "                                ";
+
 
     /**
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.map = new HashMap();
+        this.map = new CompactMap();
     }
 
 
@@ -216,7 +219,7 @@ public class JSONObject {
                 return;
             default:
                 x.back();
-                key = x.nextValue().toString();
+                key = x.canonicalKey(x.nextValue().toString());
             }
 
 // The key is followed by ':'. We will also tolerate '=' or '=>'.
@@ -258,7 +261,7 @@ public class JSONObject {
      * @throws JSONException
      */
     public JSONObject(Map map) {
-        this.map = new HashMap();
+        this.map = new CompactMap();
         if (map != null) {
             Iterator i = map.entrySet().iterator();
             while (i.hasNext()) {
@@ -288,6 +291,10 @@ public class JSONObject {
      * if the result of calling <code>object.getName()</code> is <code>"Larry Fine"</code>,
      * then the JSONObject will contain <code>"name": "Larry Fine"</code>.
      *
+     * The getters of a class are looked up once and cached, so
+     * making JSONObjects from many objects of one class does not reflect on
+     * the class each time.
+     *
      * @param bean An object that has getter methods that should be used
      * to make a JSONObject.
      */
@@ -335,6 +342,31 @@ public class JSONObject {
     }
 
 
+    /**
+     * Construct a lazy JSONObject from a source JSON text string. The text
+     * is scanned once to find where each value starts and ends, and a value
+     * is only decoded the first time it is read through get, an opt method,
+     * remove or when the object is written. Nested objects are lazy too, so
+     * reading a few members of a large object decodes only those members.
+     * <p>
+     * A lazy JSONObject has the same methods and gives the same results as
+     * one made with JSONObject(String), but it only accepts standard JSON
+     * (quoted keys, ':' and ',' separators), a nested value with a syntax
+     * error is only reported when it is read (by get; opt returns null),
+     * and reading it changes it, so it must not be read by several threads
+     * at once.
+     * @param source    A string beginning
+     *  with <code>{</code>&nbsp;<small>(left brace)</small> and ending
+     *  with <code>}</code>&nbsp;<small>(right brace)</small>.
+     * @return A lazy JSONObject.
+     * @exception JSONException If the source is not an object or the object
+     *  has a syntax error or a duplicated key.
+     */
+    public static JSONObject lazy(String source) throws JSONException {
+        return LazyValue.scanObject(source, 0, source.length());
+    }
+
+
     /**
      * Construct a JSONObject from a ResourceBundle.
      * @param baseName The ResourceBundle base name.
@@ -474,7 +506,7 @@ public class JSONObject {
         if (key == null) {
             throw new JSONException("Null key.");
         }
-        Object object = this.opt(key);
+        Object object = this.value(key);
         if (object == null) {
             throw new JSONException("JSONObject[" + quote(key) +
                     "] not found.");
@@ -796,7 +828,28 @@ public class JSONObject {
      * @return      An object which is the value, or null if there is no value.
      */
     public Object opt(String key) {
-        return key == null ? null : this.map.get(key);
+        try {
+            return key == null ? null : this.value(key);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Get the value associated with a key, decoding it first if this is a
+     * lazy JSONObject and the value has not been read yet.
+     * @param key   A key string.
+     * @return      The value, or null if there is no value.
+     * @throws JSONException If the value could not be decoded.
+     */
+    private Object value(String key) throws JSONException {
+        Object value = this.map.get(key);
+        if (value instanceof LazyValue) {
+            value = ((LazyValue)value).decode();
+            this.map.put(key, value);
+        }
+        return value;
     }
 
 
@@ -986,48 +1039,16 @@ public class JSONObject {
 
 
     private void populateMap(Object bean) {
-        Class klass = bean.getClass();
-
-// If klass is a System class then set includeSuperClass to false.
-
-        boolean includeSuperClass = klass.getClassLoader() != null;
-
-        Method[] methods = includeSuperClass
-                ? klass.getMethods()
-                : klass.getDeclaredMethods();
-        for (int i = 0; i < methods.length; i += 1) {
+        BeanProperties properties = BeanProperties.of(bean.getClass());
+        for (int i = 0; i < properties.length(); i += 1) {
+            Object result;
             try {
-                Method method = methods[i];
-                if (Modifier.isPublic(method.getModifiers())) {
-                    String name = method.getName();
-                    String key = "";
-                    if (name.startsWith("get")) {
-                        if ("getClass".equals(name) ||
-                                "getDeclaringClass".equals(name)) {
-                            key = "";
-                        } else {
-                            key = name.substring(3);
-                        }
-                    } else if (name.startsWith("is")) {
-                        key = name.substring(2);
-                    }
-                    if (key.length() > 0 &&
-                            Character.isUpperCase(key.charAt(0)) &&
-                            method.getParameterTypes().length == 0) {
-                        if (key.length() == 1) {
-                            key = key.toLowerCase();
-                        } else if (!Character.isUpperCase(key.charAt(1))) {
-                            key = key.substring(0, 1).toLowerCase() +
-                                key.substring(1);
-                        }
-
-                        Object result = method.invoke(bean, (Object[])null);
-                        if (result != null) {
-                            this.map.put(key, wrap(result));
-                        }
-                    }
-                }
-            } catch (Exception ignore) {
+                result = properties.get(i, bean);
+            } catch (Throwable ignore) {
+                continue;
+            }
+            if (result != null) {
+                this.map.put(properties.key(i), wrap(result));
             }
         }
     }
@@ -1201,6 +1222,10 @@ public class JSONObject {
     }
 
     public static Writer quote(String string, Writer w) throws IOException {
+        if (w instanceof JSONOutput) {
+            ((JSONOutput) w).writeQuoted(string);
+            return w;
+        }
         if (string == null || string.length() == 0) {
             w.write("\"\"");
             return w;
@@ -1211,21 +1236,29 @@ public class JSONObject {
         String hhhh;
         int i;
         int len = string.length();
+        int run = 0;
 
         w.write('"');
         for (i = 0; i < len; i += 1) {
             b = c;
             c = string.charAt(i);
+            if (c >= ' ' && c != '\\' && c != '"' && (c != '/' || b != '<')
+                    && (c < '\u0080' || c >= '\u00a0')
+                    && (c < '\u2000' || c >= '\u2100')) {
+                continue;
+            }
+
+// Write the run of characters that need no escape in one go.
+
+            if (i > run) {
+                w.write(string, run, i - run);
+            }
+            run = i + 1;
             switch (c) {
             case '\\':
             case '"':
-                w.write('\\');
-                w.write(c);
-                break;
             case '/':
-                if (b == '<') {
-                    w.write('\\');
-                }
+                w.write('\\');
                 w.write(c);
                 break;
             case '\b':
@@ -1244,21 +1277,33 @@ public class JSONObject {
                 w.write("\\r");
                 break;
             default:
-                if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
-                        || (c >= '\u2000' && c < '\u2100')) {
-                    w.write("\\u");
-                    hhhh = Integer.toHexString(c);
-                    w.write("0000", 0, 4 - hhhh.length());
-                    w.write(hhhh);
-                } else {
-                    w.write(c);
-                }
+                w.write("\\u");
+                hhhh = Integer.toHexString(c);
+                w.write("0000", 0, 4 - hhhh.length());
+                w.write(hhhh);
             }
         }
+        if (len > run) {
+            w.write(string, run, len - run);
+        }
         w.write('"');
         return w;
     }
 
+    /**
+     * Put the undecoded value of a lazy JSONObject.
+     * @param key   A key string.
+     * @param value The range of the source text holding the value.
+     * @throws JSONException if the key is a duplicate
+     */
+    void putLazy(String key, LazyValue value) throws JSONException {
+        if (this.map.containsKey(key)) {
+            throw new JSONException("Duplicate key \"" + key + "\"");
+        }
+        this.map.put(key, value);
+    }
+
+
     /**
      * Remove a name and its value, if present.
      * @param key The name to be removed.
@@ -1266,7 +1311,9 @@ public class JSONObject {
      * or null if there was no value.
      */
     public Object remove(String key) {
-        return this.map.remove(key);
+        Object value = this.opt(key);
+        this.map.remove(key);
+        return value;
     }
 
     /**
@@ -1300,6 +1347,47 @@ public class JSONObject {
 
         char b = string.charAt(0);
         if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
+
+            /*
+             * Integers of up to 18 digits cannot overflow a long, so their
+             * digits are accumulated directly. Decimals are only handed to
+             * Double.valueOf once their syntax has been checked. Longer
+             * integers and non-standard forms take the slower path, which
+             * relies on the number parsers to reject them.
+             */
+
+            int length = string.length();
+            int start = b == '-' || b == '+' ? 1 : 0;
+            int i = start;
+            long value = 0;
+            while (i < length) {
+                char c = string.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                i += 1;
+            }
+            int digits = i - start;
+            if (i == length && digits > 0 && digits <= 18) {
+                if (b == '-') {
+                    value = -value;
+                }
+                if (value == (int) value) {
+                    return Integer.valueOf((int) value);
+                }
+                return Long.valueOf(value);
+            }
+            if (isDecimal(string, i, digits)) {
+                d = Double.valueOf(string);
+                if (!d.isInfinite()) {
+                    return d;
+                }
+                return string;
+            }
+            if (i == length && digits == 0) {
+                return string;
+            }
             try {
                 if (string.indexOf('.') > -1 ||
                         string.indexOf('e') > -1 || string.indexOf('E') > -1) {
@@ -1307,10 +1395,10 @@ public class JSONObject {
                     if (!d.isInfinite() && !d.isNaN()) {
                         return d;
                     }
-                } else {
-                    Long myLong = new Long(string);
+                } else if (i == length) {
+                    Long myLong = Long.valueOf(string);
                     if (myLong.longValue() == myLong.intValue()) {
-                        return new Integer(myLong.intValue());
+                        return Integer.valueOf(myLong.intValue());
                     } else {
                         return myLong;
                     }
@@ -1322,6 +1410,50 @@ public class JSONObject {
     }
 
 
+    /**
+     * Check the remainder of a number whose integer digits have been read:
+     * an optional fraction and an optional exponent, with at least one digit
+     * before or after the decimal point.
+     * @param string A string whose sign and integer digits have been read.
+     * @param i The index of the first character after the integer digits.
+     * @param digits The number of integer digits.
+     * @return true if the string is a decimal number with a fraction or an
+     *  exponent.
+     */
+    private static boolean isDecimal(String string, int i, int digits) {
+        int length = string.length();
+        if (i == length) {
+            return false;
+        }
+        if (string.charAt(i) == '.') {
+            i += 1;
+            while (i < length && string.charAt(i) >= '0' &&
+                    string.charAt(i) <= '9') {
+                i += 1;
+                digits += 1;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+            i += 1;
+            if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+                i += 1;
+            }
+            int exponentStart = i;
+            while (i < length && string.charAt(i) >= '0' &&
+                    string.charAt(i) <= '9') {
+                i += 1;
+            }
+            if (i == exponentStart) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+
     /**
      * Throw an exception if the object is a NaN or infinite number.
      * @param o The object to test.
@@ -1495,15 +1627,7 @@ public class JSONObject {
              if (object instanceof Map) {
                  return new JSONObject((Map)object);
              }
-             Package objectPackage = object.getClass().getPackage();
-             String objectPackageName = objectPackage != null
-                 ? objectPackage.getName()
-                 : "";
-             if (
-                 objectPackageName.startsWith("java.") ||
-                 objectPackageName.startsWith("javax.") ||
-                 object.getClass().getClassLoader() == null
-             ) {
+             if (BeanProperties.of(object.getClass()).isSystemClass()) {
                  return object.toString();
              }
              return new JSONObject(object);
@@ -1543,7 +1667,11 @@ public class JSONObject {
         } else if (value.getClass().isArray()) {
             new JSONArray(value).write(writer, indentFactor, indent);
         } else if (value instanceof Number) {
-            writer.write(numberToString((Number) value));
+            if (writer instanceof JSONOutput) {
+                ((JSONOutput) writer).writeNumber((Number) value);
+            } else {
+                writer.write(numberToString((Number) value));
+            }
         } else if (value instanceof Boolean) {
             writer.write(value.toString());
         } else if (value instanceof JSONString) {
@@ -1561,8 +1689,10 @@ public class JSONObject {
     }
 
     static final void indent(Writer writer, int indent) throws IOException {
-        for (int i = 0; i < indent; i += 1) {
-            writer.write(' ');
+        while (indent > 0) {
+            int length = Math.min(indent, SPACES.length());
+            writer.write(SPACES, 0, length);
+            indent -= length;
         }
     }
 
@@ -1585,12 +1715,12 @@ public class JSONObject {
 
             if (length == 1) {
                 Object key = keys.next();
-                writer.write(quote(key.toString()));
+                quote(key.toString(), writer);
                 writer.write(':');
                 if (indentFactor > 0) {
                     writer.write(' ');
                 }
-                writeValue(writer, this.map.get(key), indentFactor, indent);
+                writeValue(writer, this.value(key.toString()), indentFactor, indent);
             } else if (length != 0) {
                 final int newindent = indent + indentFactor;
                 while (keys.hasNext()) {
@@ -1602,12 +1732,12 @@ public class JSONObject {
                         writer.write('\n');
                     }
                     indent(writer, newindent);
-                    writer.write(quote(key.toString()));
+                    quote(key.toString(), writer);
                     writer.write(':');
                     if (indentFactor > 0) {
                         writer.write(' ');
                     }
-                    writeValue(writer, this.map.get(key), indentFactor,
+                    writeValue(writer, this.value(key.toString()), indentFactor,
                             newindent);
                     commanate = true;
                 }
@@ -0,0 +1,421 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A JSONOutput is a Writer that encodes JSON text as UTF-8 straight into a
+ * byte buffer and hands full buffers to an OutputStream or a
+ * WritableByteChannel. The buffer is allocated once, so writing a large
+ * export costs no allocation per value.
+ * <p>
+ * JSONObject, JSONArray and JSONWriter recognize a JSONOutput and use its
+ * direct methods: strings are escaped as they are copied into the buffer
+ * instead of through a quoted copy, and integers and most doubles are
+ * written without making a String of them.
+ * <pre>
+ * JSONOutput out = new JSONOutput(stream);
+ * jsonArray.write(out);
+ * out.flush();</pre>
+ * <p>
+ * A JSONOutput is not thread-safe. Unpaired surrogates are written as '?',
+ * as an OutputStreamWriter does.
+ */
+public class JSONOutput extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] HEX = {
+        '0', '1', '2', '3', '4', '5', '6', '7',
+        '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer wrapped;
+    private int count;
+    private char highSurrogate;
+
+
+    /**
+     * Construct a JSONOutput writing to an OutputStream. The stream does not
+     * need to be buffered.
+     *
+     * @param stream     An output stream.
+     */
+    public JSONOutput(OutputStream stream) {
+        this.stream = stream;
+        this.channel = null;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.wrapped = null;
+    }
+
+
+    /**
+     * Construct a JSONOutput writing to a channel, such as a FileChannel or
+     * a SocketChannel. The buffer is handed to the channel without being
+     * copied.
+     *
+     * @param channel     A writable channel.
+     */
+    public JSONOutput(WritableByteChannel channel) {
+        this.stream = null;
+        this.channel = channel;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.wrapped = ByteBuffer.wrap(this.buffer);
+    }
+
+
+    /**
+     * Write a character.
+     *
+     * @param c     The character, in the low 16 bits.
+     */
+    public void write(int c) throws IOException {
+        this.writeChar((char) c);
+    }
+
+
+    /**
+     * Write characters from an array.
+     *
+     * @param chars     A character array.
+     * @param offset     The index of the first character.
+     * @param length     The number of characters.
+     */
+    public void write(char[] chars, int offset, int length) throws IOException {
+        byte[] buf = this.buffer;
+        for (int i = offset, end = offset + length; i < end; i += 1) {
+            char c = chars[i];
+            if (c < 0x80 && this.highSurrogate == 0) {
+                if (this.count == buf.length) {
+                    this.flushBuffer();
+                }
+                buf[this.count] = (byte) c;
+                this.count += 1;
+            } else {
+                this.writeChar(c);
+            }
+        }
+    }
+
+
+    /**
+     * Write characters from a string.
+     *
+     * @param string     A string.
+     * @param offset     The index of the first character.
+     * @param length     The number of characters.
+     */
+    public void write(String string, int offset, int length) throws IOException {
+        byte[] buf = this.buffer;
+        for (int i = offset, end = offset + length; i < end; i += 1) {
+            char c = string.charAt(i);
+            if (c < 0x80 && this.highSurrogate == 0) {
+                if (this.count == buf.length) {
+                    this.flushBuffer();
+                }
+                buf[this.count] = (byte) c;
+                this.count += 1;
+            } else {
+                this.writeChar(c);
+            }
+        }
+    }
+
+
+    /**
+     * Write a string in double quotes, escaped the way JSONObject.quote
+     * escapes it. Characters that need no escape are copied into the buffer
+     * directly.
+     *
+     * @param string     A string. null is written as an empty string.
+     */
+    public void writeQuoted(String string) throws IOException {
+        this.writeAscii('"');
+        if (string != null) {
+            byte[] buf = this.buffer;
+            char b;
+            char c = 0;
+            int len = string.length();
+            for (int i = 0; i < len; i += 1) {
+                b = c;
+                c = string.charAt(i);
+                if (c >= ' ' && c < 0x80 && c != '"' && c != '\\' && c != '/' &&
+                        this.highSurrogate == 0) {
+                    if (this.count == buf.length) {
+                        this.flushBuffer();
+                    }
+                    buf[this.count] = (byte) c;
+                    this.count += 1;
+                    continue;
+                }
+                switch (c) {
+                case '\\':
+                case '"':
+                    this.writeAscii('\\', c);
+                    break;
+                case '/':
+                    if (b == '<') {
+                        this.writeAscii('\\', c);
+                    } else {
+                        this.writeAscii(c);
+                    }
+                    break;
+                case '\b':
+                    this.writeAscii('\\', 'b');
+                    break;
+                case '\t':
+                    this.writeAscii('\\', 't');
+                    break;
+                case '\n':
+                    this.writeAscii('\\', 'n');
+                    break;
+                case '\f':
+                    this.writeAscii('\\', 'f');
+                    break;
+                case '\r':
+                    this.writeAscii('\\', 'r');
+                    break;
+                default:
+                    if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
+                            || (c >= '\u2000' && c < '\u2100')) {
+                        this.ensure(6);
+                        buf[this.count] = '\\';
+                        buf[this.count + 1] = 'u';
+                        buf[this.count + 2] = HEX[(c >> 12) & 0xF];
+                        buf[this.count + 3] = HEX[(c >> 8) & 0xF];
+                        buf[this.count + 4] = HEX[(c >> 4) & 0xF];
+                        buf[this.count + 5] = HEX[c & 0xF];
+                        this.count += 6;
+                    } else {
+                        this.writeChar(c);
+                    }
+                }
+            }
+        }
+        this.writeAscii('"');
+    }
+
+
+    /**
+     * Write a long in decimal, without making a String of it.
+     *
+     * @param value     A long.
+     */
+    public void writeNumber(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            this.write("-9223372036854775808");
+            return;
+        }
+        this.ensure(20);
+        byte[] buf = this.buffer;
+        if (value < 0) {
+            buf[this.count] = '-';
+            this.count += 1;
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits += 1;
+        }
+        int i = this.count + digits;
+        this.count = i;
+        do {
+            i -= 1;
+            buf[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+    }
+
+
+    /**
+     * Write a double as JSONObject.numberToString writes it. Integral
+     * values below ten million are written as longs, other values from
+     * Double.toString without its trailing zeros.
+     *
+     * @param value     A finite double.
+     * @throws JSONException If the value is not finite.
+     */
+    public void writeNumber(double value) throws JSONException, IOException {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        if (value == (long) value && Math.abs(value) < 1e7 &&
+                (value != 0 || 1 / value > 0)) {
+            this.writeNumber((long) value);
+            return;
+        }
+        String string = Double.toString(value);
+        int end = string.length();
+        if (string.indexOf('.') > 0 && string.indexOf('E') < 0) {
+            while (string.charAt(end - 1) == '0') {
+                end -= 1;
+            }
+            if (string.charAt(end - 1) == '.') {
+                end -= 1;
+            }
+        }
+        this.write(string, 0, end);
+    }
+
+
+    /**
+     * Write a Number as JSONObject.numberToString writes it.
+     *
+     * @param number     A Number.
+     * @throws JSONException If the number is not finite.
+     */
+    public void writeNumber(Number number) throws JSONException, IOException {
+        if (number instanceof Integer || number instanceof Long ||
+                number instanceof Short || number instanceof Byte) {
+            this.writeNumber(number.longValue());
+        } else if (number instanceof Double) {
+            this.writeNumber(number.doubleValue());
+        } else {
+            this.write(JSONObject.numberToString(number));
+        }
+    }
+
+
+    /**
+     * Write the buffered text and flush the underlying stream.
+     */
+    public void flush() throws IOException {
+        this.flushBuffer();
+        if (this.stream != null) {
+            this.stream.flush();
+        }
+    }
+
+
+    /**
+     * Write the buffered text and close the underlying stream or channel.
+     */
+    public void close() throws IOException {
+        this.unpairedSurrogate();
+        this.flushBuffer();
+        if (this.stream != null) {
+            this.stream.close();
+        } else {
+            this.channel.close();
+        }
+    }
+
+
+    private void writeAscii(char c) throws IOException {
+        this.unpairedSurrogate();
+        if (this.count == this.buffer.length) {
+            this.flushBuffer();
+        }
+        this.buffer[this.count] = (byte) c;
+        this.count += 1;
+    }
+
+
+    private void writeAscii(char c1, char c2) throws IOException {
+        this.ensure(2);
+        this.buffer[this.count] = (byte) c1;
+        this.buffer[this.count + 1] = (byte) c2;
+        this.count += 2;
+    }
+
+
+    /**
+     * Encode one character, pairing surrogates across calls.
+     */
+    private void writeChar(char c) throws IOException {
+        if (this.highSurrogate != 0) {
+            char high = this.highSurrogate;
+            this.highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int code = Character.toCodePoint(high, c);
+                this.ensure(4);
+                byte[] buf = this.buffer;
+                buf[this.count] = (byte) (0xF0 | (code >> 18));
+                buf[this.count + 1] = (byte) (0x80 | ((code >> 12) & 0x3F));
+                buf[this.count + 2] = (byte) (0x80 | ((code >> 6) & 0x3F));
+                buf[this.count + 3] = (byte) (0x80 | (code & 0x3F));
+                this.count += 4;
+                return;
+            }
+            this.writeAscii('?');
+        }
+        if (c < 0x80) {
+            this.writeAscii(c);
+        } else if (c < 0x800) {
+            this.ensure(2);
+            this.buffer[this.count] = (byte) (0xC0 | (c >> 6));
+            this.buffer[this.count + 1] = (byte) (0x80 | (c & 0x3F));
+            this.count += 2;
+        } else if (Character.isHighSurrogate(c)) {
+            this.highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            this.writeAscii('?');
+        } else {
+            this.ensure(3);
+            this.buffer[this.count] = (byte) (0xE0 | (c >> 12));
+            this.buffer[this.count + 1] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            this.buffer[this.count + 2] = (byte) (0x80 | (c & 0x3F));
+            this.count += 3;
+        }
+    }
+
+
+    /**
+     * Write '?' for a high surrogate that is not followed by a low one.
+     */
+    private void unpairedSurrogate() throws IOException {
+        if (this.highSurrogate != 0) {
+            this.highSurrogate = 0;
+            this.writeAscii('?');
+        }
+    }
+
+
+    private void ensure(int length) throws IOException {
+        this.unpairedSurrogate();
+        if (this.count + length > this.buffer.length) {
+            this.flushBuffer();
+        }
+    }
+
+
+    private void flushBuffer() throws IOException {
+        if (this.count == 0) {
+            return;
+        }
+        if (this.stream != null) {
+            this.stream.write(this.buffer, 0, this.count);
+        } else {
+            this.wrapped.clear();
+            this.wrapped.limit(this.count);
+            while (this.wrapped.hasRemaining()) {
+                this.channel.write(this.wrapped);
+            }
+        }
+        this.count = 0;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JSONPath selects values inside a JSON text by their position, so that a
+ * JSONPullParser can stop on the selected values and skip everything else
+ * without reading it into tokens. See JSONPullParser.nextMatch.
+ * <p>
+ * A path starts with <code>$</code>, the root value, followed by steps:
+ * <pre>
+ * .name  or ['name']   the field called name of an object
+ * .*                   every field of an object
+ * [*]                  every element of an array
+ * </pre>
+ * For example <code>$[*].metricValues[*]</code> selects every element of
+ * the metricValues array of every object in the root array.
+ */
+public class JSONPath {
+
+    private static final byte FIELD = 0;
+    private static final byte ANY_FIELD = 1;
+    private static final byte ANY_ELEMENT = 2;
+
+    private final String expression;
+    private final byte[] kinds;
+    private final char[][] names;
+
+
+    private JSONPath(String expression, byte[] kinds, char[][] names) {
+        this.expression = expression;
+        this.kinds = kinds;
+        this.names = names;
+    }
+
+
+    /**
+     * Compile a path expression.
+     *
+     * @param expression A path such as <code>$[*].metricValues[*]</code>.
+     * @return The compiled path.
+     * @throws JSONException If the expression is not a valid path.
+     */
+    public static JSONPath compile(String expression) throws JSONException {
+        if (!expression.startsWith("$")) {
+            throw malformed(expression, "a path must start with '$'");
+        }
+        List<Byte> kinds = new ArrayList<Byte>();
+        List<char[]> names = new ArrayList<char[]>();
+        int i = 1;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (c == '.') {
+                int start = i + 1;
+                i = start;
+                while (i < length && expression.charAt(i) != '.' &&
+                        expression.charAt(i) != '[') {
+                    i += 1;
+                }
+                if (i == start) {
+                    throw malformed(expression, "missing field name");
+                }
+                String name = expression.substring(start, i);
+                if (name.equals("*")) {
+                    kinds.add(Byte.valueOf(ANY_FIELD));
+                    names.add(null);
+                } else {
+                    kinds.add(Byte.valueOf(FIELD));
+                    names.add(name.toCharArray());
+                }
+            } else if (expression.startsWith("[*]", i)) {
+                kinds.add(Byte.valueOf(ANY_ELEMENT));
+                names.add(null);
+                i += 3;
+            } else if (expression.startsWith("['", i) || expression.startsWith("[\"", i)) {
+                char quote = expression.charAt(i + 1);
+                int end = expression.indexOf(quote, i + 2);
+                if (end < 0 || end + 1 >= length || expression.charAt(end + 1) != ']') {
+                    throw malformed(expression, "unterminated field name");
+                }
+                kinds.add(Byte.valueOf(FIELD));
+                names.add(expression.substring(i + 2, end).toCharArray());
+                i = end + 2;
+            } else {
+                throw malformed(expression, "unexpected '" + c + "'");
+            }
+        }
+
+        byte[] kindArray = new byte[kinds.size()];
+        for (int k = 0; k < kindArray.length; k += 1) {
+            kindArray[k] = kinds.get(k).byteValue();
+        }
+        return new JSONPath(expression, kindArray,
+                names.toArray(new char[names.size()][]));
+    }
+
+
+    /**
+     * Get the number of steps below the root value.
+     *
+     * @return The number of steps, 0 for <code>$</code>.
+     */
+    int length() {
+        return this.kinds.length;
+    }
+
+
+    /**
+     * Determine whether a step selects a field.
+     *
+     * @param step The index of the step.
+     * @param name A buffer holding the field name.
+     * @param nameLength The length of the field name.
+     * @return true if the step selects the field.
+     */
+    boolean matchesField(int step, char[] name, int nameLength) {
+        if (this.kinds[step] == ANY_FIELD) {
+            return true;
+        }
+        if (this.kinds[step] != FIELD) {
+            return false;
+        }
+        char[] expected = this.names[step];
+        if (expected.length != nameLength) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i += 1) {
+            if (expected[i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Determine whether a step selects the elements of an array.
+     *
+     * @param step The index of the step.
+     * @return true if the step selects every element.
+     */
+    boolean matchesElement(int step) {
+        return this.kinds[step] == ANY_ELEMENT;
+    }
+
+
+    /**
+     * Get the expression the path was compiled from.
+     *
+     * @return The expression.
+     */
+    public String toString() {
+        return this.expression;
+    }
+
+
+    private static JSONException malformed(String expression, String message) {
+        return new JSONException("Malformed JSON path " + expression + ": " + message);
+    }
+}
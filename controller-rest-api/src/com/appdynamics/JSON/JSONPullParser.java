@@ -0,0 +1,886 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+/**
+ * A JSONPullParser reads JSON text as a sequence of tokens, without building
+ * a JSONObject or JSONArray tree. The caller asks for one token at a time
+ * with next() and reads the text or value of the current token, so a large
+ * response can be processed while it is being received and with a bounded
+ * amount of memory: a fixed read buffer, the text of the current token and
+ * one byte per level of nesting.
+ * <p>
+ * Parsing
+ * <pre>{"id": 5, "tags": ["a"]}</pre>
+ * yields START_OBJECT, FIELD_NAME (id), VALUE_NUMBER (5), FIELD_NAME (tags),
+ * START_ARRAY, VALUE_STRING (a), END_ARRAY, END_OBJECT, and then null.
+ * <p>
+ * Unlike JSONTokener, the parser only accepts standard JSON: strings must be
+ * double quoted and the only unquoted values are numbers, true, false and
+ * null.
+ */
+public class JSONPullParser {
+
+    /**
+     * The kinds of token returned by next().
+     */
+    public enum Token {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        FIELD_NAME,
+        VALUE_STRING,
+        VALUE_NUMBER,
+        VALUE_TRUE,
+        VALUE_FALSE,
+        VALUE_NULL
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte IN_OBJECT = 1;
+    private static final byte IN_ARRAY = 2;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private long offset;
+
+    private byte[] stack = new byte[16];
+    private int depth;
+    private boolean rootDone;
+
+    private Token token;
+    private char[] text = new char[64];
+    private int textLength;
+    private String textString;
+    private boolean integral;
+
+    private SymbolTable symbols;
+    private boolean canonicalValues;
+
+    private final ParserSupport support = new ParserSupport();
+
+
+    /**
+     * Construct a JSONPullParser from a Reader. The reader does not need to
+     * be buffered.
+     *
+     * @param reader     A reader.
+     */
+    public JSONPullParser(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+
+    /**
+     * Construct a JSONPullParser from an InputStream of UTF-8 encoded text.
+     *
+     * @param inputStream     An input stream.
+     */
+    public JSONPullParser(InputStream inputStream) {
+        this(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+    }
+
+
+    /**
+     * Construct a JSONPullParser from a string.
+     *
+     * @param s     A source string.
+     */
+    public JSONPullParser(String s) {
+        this(new StringReader(s));
+    }
+
+
+    /**
+     * Advance to the next token.
+     *
+     * @return The next token, or null once the root value has been read
+     *  completely and only whitespace remains.
+     * @throws JSONException If the text is not valid JSON or could not be
+     *  read.
+     */
+    public Token next() throws JSONException {
+        this.textString = null;
+        int c = this.nextClean();
+
+        if (this.depth == 0) {
+            if (c == -1) {
+                if (this.token != null && !this.rootDone) {
+                    throw this.syntaxError("Unexpected end of input");
+                }
+                return this.token = null;
+            }
+            if (this.rootDone) {
+                throw this.syntaxError("Unexpected text after the end of the root value");
+            }
+            return this.startValue(c);
+        }
+        if (c == -1) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+
+        if (this.stack[this.depth - 1] == IN_OBJECT) {
+            if (this.token == Token.START_OBJECT) {
+                return c == '}' ? this.endContainer(Token.END_OBJECT) : this.fieldName(c);
+            }
+            if (this.token == Token.FIELD_NAME) {
+                if (c != ':') {
+                    throw this.syntaxError("Expected ':' after a field name");
+                }
+                return this.startValue(this.nextClean());
+            }
+            if (c == '}') {
+                return this.endContainer(Token.END_OBJECT);
+            }
+            if (c != ',') {
+                throw this.syntaxError("Expected ',' or '}'");
+            }
+            return this.fieldName(this.nextClean());
+        }
+
+        if (this.token == Token.START_ARRAY) {
+            return c == ']' ? this.endContainer(Token.END_ARRAY) : this.startValue(c);
+        }
+        if (c == ']') {
+            return this.endContainer(Token.END_ARRAY);
+        }
+        if (c != ',') {
+            throw this.syntaxError("Expected ',' or ']'");
+        }
+        return this.startValue(this.nextClean());
+    }
+
+
+    /**
+     * Choose whether the text of short values, like field names, is taken
+     * from the parser's symbol table, so that values repeated across the
+     * objects of a response (type names, tier names and the like) share one
+     * String. Field names are always canonicalized.
+     *
+     * @param canonicalValues true to canonicalize the text of strings and
+     *  numbers of up to 32 characters.
+     */
+    public void setCanonicalValues(boolean canonicalValues) {
+        this.canonicalValues = canonicalValues;
+    }
+
+
+    /**
+     * Get the current token, the one returned by the last call to next().
+     *
+     * @return The current token, or null before the first call to next()
+     *  and at the end of the input.
+     */
+    public Token getToken() {
+        return this.token;
+    }
+
+
+    /**
+     * Get the number of objects and arrays enclosing the current position.
+     * START_OBJECT and START_ARRAY count the container they open, END_OBJECT
+     * and END_ARRAY no longer count the container they close.
+     *
+     * @return The nesting depth.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+
+    /**
+     * Get the text of the current token: the name of a FIELD_NAME, the
+     * unescaped content of a VALUE_STRING, the literal text of a
+     * VALUE_NUMBER, or "true", "false", "null", "{", "}", "[" or "]".
+     *
+     * @return The text of the current token.
+     */
+    public String getText() {
+        if (this.textString == null) {
+            if (this.token == null) {
+                return null;
+            }
+            switch (this.token) {
+            case START_OBJECT:
+                this.textString = "{";
+                break;
+            case END_OBJECT:
+                this.textString = "}";
+                break;
+            case START_ARRAY:
+                this.textString = "[";
+                break;
+            case END_ARRAY:
+                this.textString = "]";
+                break;
+            case VALUE_TRUE:
+                this.textString = "true";
+                break;
+            case VALUE_FALSE:
+                this.textString = "false";
+                break;
+            case VALUE_NULL:
+                this.textString = "null";
+                break;
+            case FIELD_NAME:
+                this.textString = this.symbols().get(this.text, this.textLength,
+                        SymbolTable.MAX_KEY_LENGTH);
+                break;
+            case VALUE_STRING:
+            case VALUE_NUMBER:
+                this.textString = this.canonicalValues
+                    ? this.symbols().get(this.text, this.textLength, SymbolTable.MAX_VALUE_LENGTH)
+                    : new String(this.text, 0, this.textLength);
+                break;
+            default:
+                this.textString = new String(this.text, 0, this.textLength);
+            }
+        }
+        return this.textString;
+    }
+
+
+    /**
+     * Determine whether the current VALUE_NUMBER has neither a fraction nor
+     * an exponent.
+     *
+     * @return true if the current number is an integer.
+     */
+    public boolean isIntegral() {
+        return this.token == Token.VALUE_NUMBER && this.integral;
+    }
+
+
+    /**
+     * Get the current value as a long. Numbers with a fraction or exponent
+     * are truncated, strings are parsed. Numbers are read from the token
+     * text directly, without making a String of it.
+     *
+     * @return The long value.
+     * @throws JSONException If the current value is not a number or a string
+     *  holding a number.
+     */
+    public long getLong() throws JSONException {
+        if (this.token == Token.VALUE_NUMBER && this.integral) {
+            return ParserSupport.longValue(this.text, this.textLength);
+        }
+        return (long) this.getDouble();
+    }
+
+
+    /**
+     * Get the current value as an int.
+     *
+     * @return The int value.
+     * @throws JSONException If the current value is not a number or a string
+     *  holding a number.
+     */
+    public int getInt() throws JSONException {
+        return (int) this.getLong();
+    }
+
+
+    /**
+     * Get the current value as a double.
+     *
+     * @return The double value.
+     * @throws JSONException If the current value is not a number or a string
+     *  holding a number.
+     */
+    public double getDouble() throws JSONException {
+        if (this.token == Token.VALUE_NUMBER) {
+            return ParserSupport.doubleValue(this.text, this.textLength);
+        }
+        if (this.token == Token.VALUE_STRING) {
+            try {
+                return Double.parseDouble(this.getText());
+            } catch (NumberFormatException e) {
+                throw this.syntaxError("Not a number: " + this.getText());
+            }
+        }
+        throw this.syntaxError("Expected a number instead of " + this.token);
+    }
+
+
+    /**
+     * Get the current value as a boolean.
+     *
+     * @return The boolean value.
+     * @throws JSONException If the current value is not true, false or a
+     *  string "true" or "false".
+     */
+    public boolean getBoolean() throws JSONException {
+        if (this.token == Token.VALUE_TRUE) {
+            return true;
+        }
+        if (this.token == Token.VALUE_FALSE) {
+            return false;
+        }
+        if (this.token == Token.VALUE_STRING) {
+            if ("true".equalsIgnoreCase(this.getText())) {
+                return true;
+            }
+            if ("false".equalsIgnoreCase(this.getText())) {
+                return false;
+            }
+        }
+        throw this.syntaxError("Expected a boolean instead of " + this.token);
+    }
+
+
+    /**
+     * Get the current value as an object, the way JSONObject.get would
+     * return it: a String, Boolean, Integer, Long, Double, JSONObject.NULL,
+     * or, if the current token is START_OBJECT or START_ARRAY, the whole
+     * JSONObject or JSONArray it opens. In the latter case the parser is
+     * left on the matching END_OBJECT or END_ARRAY.
+     *
+     * @return The current value.
+     * @throws JSONException If the current token is not the start of a value.
+     */
+    public Object readValue() throws JSONException {
+        if (this.token == null) {
+            throw this.syntaxError("No current value");
+        }
+        switch (this.token) {
+        case START_OBJECT:
+            JSONObject object = new JSONObject();
+            while (this.next() != Token.END_OBJECT) {
+                String key = this.getText();
+                this.next();
+                object.put(key, this.readValue());
+            }
+            return object;
+        case START_ARRAY:
+            JSONArray array = new JSONArray();
+            while (this.next() != Token.END_ARRAY) {
+                array.put(this.readValue());
+            }
+            return array;
+        case VALUE_STRING:
+            return this.getText();
+        case VALUE_NUMBER:
+            return ParserSupport.numberValue(this.text, this.textLength, this.integral);
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return JSONObject.NULL;
+        default:
+            throw this.syntaxError("Expected a value instead of " + this.token);
+        }
+    }
+
+
+    /**
+     * If the current token is START_OBJECT or START_ARRAY, skip everything up
+     * to and including the matching END_OBJECT or END_ARRAY. Does nothing for
+     * other tokens.
+     *
+     * @throws JSONException If the skipped text is not valid JSON.
+     */
+    public void skipChildren() throws JSONException {
+        if (this.token != Token.START_OBJECT && this.token != Token.START_ARRAY) {
+            return;
+        }
+        int target = this.depth - 1;
+        while (this.depth > target) {
+            if (this.next() == null) {
+                throw this.syntaxError("Unexpected end of input");
+            }
+        }
+    }
+
+
+    /**
+     * Advance to the next value selected by a path, skipping everything
+     * else. See nextMatch(JSONPath[]).
+     *
+     * @param path The path to look for.
+     * @return true if the parser is on a selected value, false at the end of
+     *  the input.
+     * @throws JSONException If the text is not valid JSON or could not be
+     *  read.
+     */
+    public boolean nextMatch(JSONPath path) throws JSONException {
+        return this.nextMatch(this.support.single(path)) >= 0;
+    }
+
+
+    /**
+     * Advance to the next value selected by any of the paths, skipping
+     * everything else. The parser stops on the first token of the value:
+     * a scalar token, START_OBJECT or START_ARRAY. A value selected by a
+     * path may contain values selected by longer paths, which are found by
+     * calling nextMatch again, unless the caller has read the value itself.
+     * <p>
+     * Fields and array elements that no path can select are skipped without
+     * decoding their text, so their strings are not copied and their
+     * numbers are not converted. Skipped text is only checked for balanced
+     * brackets and terminated strings.
+     * <p>
+     * Start on a new parser, and between calls either leave the selected
+     * value alone or read it completely, for example with readValue() or a
+     * JSONBinder.
+     *
+     * @param paths At most 32 paths to look for.
+     * @return The index in paths of the path that selected the value, the
+     *  lowest one if several did, or -1 at the end of the input.
+     * @throws JSONException If the text is not valid JSON or could not be
+     *  read.
+     */
+    public int nextMatch(JSONPath[] paths) throws JSONException {
+        int all = ParserSupport.all(paths);
+        for (;;) {
+            Token t = this.next();
+            if (t == null) {
+                return -1;
+            }
+
+            int level;
+            switch (t) {
+            case END_OBJECT:
+            case END_ARRAY:
+                continue;
+            case FIELD_NAME:
+                if (!this.support.matchField(paths, this.depth, this.text, this.textLength)) {
+                    this.skipFieldValue();
+                }
+                continue;
+            case START_OBJECT:
+            case START_ARRAY:
+                level = this.depth - 1;
+                break;
+            default:
+                level = this.depth;
+            }
+
+            int match = this.support.matchValue(paths, all, level,
+                    level > 0 && this.stack[level - 1] == IN_OBJECT,
+                    t == Token.START_OBJECT || t == Token.START_ARRAY);
+            if (match == ParserSupport.SKIP) {
+                this.skipContainer();
+            } else if (match >= 0) {
+                return match;
+            }
+        }
+    }
+
+
+    /**
+     * Close the underlying reader.
+     */
+    public void close() throws JSONException {
+        try {
+            this.reader.close();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     *
+     * @param message The error message.
+     * @return  A JSONException object, suitable for throwing
+     */
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + this.toString());
+    }
+
+
+    /**
+     * Make a printable string of this JSONPullParser.
+     *
+     * @return " at character {index}"
+     */
+    public String toString() {
+        return " at character " + (this.offset + this.position);
+    }
+
+
+    private Token startValue(int c) throws JSONException {
+        switch (c) {
+        case '{':
+            this.push(IN_OBJECT);
+            return this.token = Token.START_OBJECT;
+        case '[':
+            this.push(IN_ARRAY);
+            return this.token = Token.START_ARRAY;
+        case '"':
+            this.readString();
+            this.token = Token.VALUE_STRING;
+            break;
+        case 't':
+            this.readLiteral("true");
+            this.token = Token.VALUE_TRUE;
+            break;
+        case 'f':
+            this.readLiteral("false");
+            this.token = Token.VALUE_FALSE;
+            break;
+        case 'n':
+            this.readLiteral("null");
+            this.token = Token.VALUE_NULL;
+            break;
+        case -1:
+            throw this.syntaxError("Unexpected end of input");
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                this.readNumber(c);
+                this.token = Token.VALUE_NUMBER;
+                break;
+            }
+            throw this.syntaxError("Unexpected character '" + (char) c + "'");
+        }
+        if (this.depth == 0) {
+            this.rootDone = true;
+        }
+        return this.token;
+    }
+
+
+    private Token fieldName(int c) throws JSONException {
+        if (c != '"') {
+            throw this.syntaxError("Expected a field name");
+        }
+        this.readString();
+        return this.token = Token.FIELD_NAME;
+    }
+
+
+    private Token endContainer(Token end) {
+        this.depth -= 1;
+        if (this.depth == 0) {
+            this.rootDone = true;
+        }
+        return this.token = end;
+    }
+
+
+    private void push(byte container) {
+        if (this.depth == this.stack.length) {
+            byte[] grown = new byte[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, grown, 0, this.depth);
+            this.stack = grown;
+        }
+        this.stack[this.depth] = container;
+        this.depth += 1;
+    }
+
+
+    /**
+     * Skip the value of the current field. Strings and containers are
+     * skipped without decoding them, other values are short and read as
+     * usual.
+     */
+    private void skipFieldValue() throws JSONException {
+        if (this.nextClean() != ':') {
+            throw this.syntaxError("Expected ':' after a field name");
+        }
+        int c = this.nextClean();
+        if (c == '"') {
+            this.skipString();
+            this.textLength = 0;
+            this.token = Token.VALUE_STRING;
+        } else if (c == '{' || c == '[') {
+            this.startValue(c);
+            this.skipContainer();
+        } else {
+            this.startValue(c);
+        }
+    }
+
+
+    /**
+     * Skip the rest of the container the parser has just entered, up to and
+     * including its closing bracket, counting brackets but not decoding
+     * anything.
+     */
+    private void skipContainer() throws JSONException {
+        int nesting = 1;
+        for (;;) {
+            if (this.position == this.limit && !this.fill()) {
+                throw this.syntaxError("Unexpected end of input");
+            }
+            char c = this.buffer[this.position];
+            this.position += 1;
+            if (c == '"') {
+                this.skipString();
+            } else if (c == '{' || c == '[') {
+                nesting += 1;
+            } else if (c == '}' || c == ']') {
+                nesting -= 1;
+                if (nesting == 0) {
+                    if ((c == '}') != (this.stack[this.depth - 1] == IN_OBJECT)) {
+                        throw this.syntaxError("Mismatched '" + c + "'");
+                    }
+                    this.endContainer(c == '}' ? Token.END_OBJECT : Token.END_ARRAY);
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Skip the rest of a string whose opening quote has been consumed.
+     */
+    private void skipString() throws JSONException {
+        for (;;) {
+            if (this.position == this.limit && !this.fill()) {
+                throw this.syntaxError("Unterminated string");
+            }
+            char c = this.buffer[this.position];
+            this.position += 1;
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\' && this.read() == -1) {
+                throw this.syntaxError("Unterminated string");
+            }
+        }
+    }
+
+
+    /**
+     * Read the rest of a string whose opening quote has been consumed into
+     * the text buffer, resolving escapes.
+     */
+    private void readString() throws JSONException {
+        this.textLength = 0;
+        for (;;) {
+            if (this.position == this.limit && !this.fill()) {
+                throw this.syntaxError("Unterminated string");
+            }
+
+            // copy the run of plain characters in one go
+            int start = this.position;
+            char[] buf = this.buffer;
+            int end = this.limit;
+            int i = start;
+            while (i < end) {
+                char c = buf[i];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                i += 1;
+            }
+            this.appendText(buf, start, i - start);
+            this.position = i;
+            if (i == end) {
+                continue;
+            }
+
+            char c = buf[i];
+            this.position += 1;
+            if (c == '"') {
+                return;
+            }
+            this.appendText(this.readEscape());
+        }
+    }
+
+
+    private char readEscape() throws JSONException {
+        int c = this.read();
+        switch (c) {
+        case 'b':
+            return '\b';
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'f':
+            return '\f';
+        case 'r':
+            return '\r';
+        case '"':
+        case '\\':
+        case '/':
+            return (char) c;
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i += 1) {
+                int digit = this.read();
+                int hex = digit < 0 ? -1 : JSONTokener.dehexchar((char) digit);
+                if (hex < 0) {
+                    throw this.syntaxError("Illegal unicode escape");
+                }
+                value = (value << 4) | hex;
+            }
+            return (char) value;
+        case -1:
+            throw this.syntaxError("Unterminated string");
+        default:
+            throw this.syntaxError("Illegal escape");
+        }
+    }
+
+
+    /**
+     * Read the characters of a number, the first of which has been consumed,
+     * into the text buffer and check that they form a JSON number.
+     */
+    private void readNumber(int first) throws JSONException {
+        this.textLength = 0;
+        this.appendText((char) first);
+        this.integral = true;
+
+        int c;
+        for (;;) {
+            c = this.peek();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                this.position += 1;
+                this.appendText((char) c);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    this.integral = false;
+                }
+            } else {
+                break;
+            }
+        }
+
+        if (!ParserSupport.isNumber(this.text, this.textLength)) {
+            throw this.syntaxError("Malformed number: " + new String(this.text, 0, this.textLength));
+        }
+    }
+
+
+    private SymbolTable symbols() {
+        if (this.symbols == null) {
+            this.symbols = new SymbolTable();
+        }
+        return this.symbols;
+    }
+
+
+    private void readLiteral(String literal) throws JSONException {
+        for (int i = 1; i < literal.length(); i += 1) {
+            if (this.read() != literal.charAt(i)) {
+                throw this.syntaxError("Expected '" + literal + "'");
+            }
+        }
+        int c = this.peek();
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+            throw this.syntaxError("Expected '" + literal + "'");
+        }
+    }
+
+
+    private void appendText(char c) {
+        if (this.textLength == this.text.length) {
+            this.growText(1);
+        }
+        this.text[this.textLength] = c;
+        this.textLength += 1;
+    }
+
+
+    private void appendText(char[] chars, int start, int length) {
+        if (this.textLength + length > this.text.length) {
+            this.growText(length);
+        }
+        System.arraycopy(chars, start, this.text, this.textLength, length);
+        this.textLength += length;
+    }
+
+
+    private void growText(int needed) {
+        char[] grown = new char[Math.max(this.text.length * 2, this.textLength + needed)];
+        System.arraycopy(this.text, 0, grown, 0, this.textLength);
+        this.text = grown;
+    }
+
+
+    /**
+     * Get the next character that is not whitespace.
+     *
+     * @return A character, or -1 at the end of the input.
+     */
+    private int nextClean() throws JSONException {
+        for (;;) {
+            if (this.position == this.limit && !this.fill()) {
+                return -1;
+            }
+            char c = this.buffer[this.position];
+            this.position += 1;
+            if (c > ' ') {
+                return c;
+            }
+        }
+    }
+
+
+    private int read() throws JSONException {
+        if (this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        char c = this.buffer[this.position];
+        this.position += 1;
+        return c;
+    }
+
+
+    private int peek() throws JSONException {
+        if (this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.position];
+    }
+
+
+    /**
+     * Refill the read buffer once it has been consumed.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean fill() throws JSONException {
+        this.offset += this.limit;
+        this.position = 0;
+        this.limit = 0;
+        try {
+            int read;
+            do {
+                read = this.reader.read(this.buffer, 0, this.buffer.length);
+            } while (read == 0);
+            if (read < 0) {
+                return false;
+            }
+            this.limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.Charset;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -66,6 +67,8 @@ public class JSONTokener {
     private char    previous;
     private Reader  reader;
     private boolean usePrevious;
+    private SymbolTable symbols;
+    private boolean canonicalValues;
 
 
     /**
@@ -87,10 +90,10 @@ public class JSONTokener {
 
 
     /**
-     * Construct a JSONTokener from an InputStream.
+     * Construct a JSONTokener from an InputStream of UTF-8 encoded text.
      */
     public JSONTokener(InputStream inputStream) throws JSONException {
-        this(new InputStreamReader(inputStream));
+        this(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
     }
 
 
@@ -376,7 +379,10 @@ public class JSONTokener {
         switch (c) {
             case '"':
             case '\'':
-                return this.nextString(c);
+                string = this.nextString(c);
+                return this.canonicalValues
+                    ? this.symbols().get(string, SymbolTable.MAX_VALUE_LENGTH)
+                    : string;
             case '{':
                 this.back();
                 return new JSONObject(this);
@@ -409,6 +415,100 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Get the next value as a long. The digits are accumulated as they are
+     * read, so unlike nextValue no String or Long is made for the number.
+     * The character following the number is left to be read next.
+     * @throws JSONException If the next value is not an integer or does not
+     *  fit in a long.
+     *
+     * @return A long.
+     */
+    public long nextLong() throws JSONException {
+        char c = this.nextClean();
+        boolean negative = c == '-';
+        if (negative || c == '+') {
+            c = this.next();
+        }
+        if (c < '0' || c > '9') {
+            throw this.syntaxError("Expected a number");
+        }
+
+        // accumulate negatively, as Long.parseLong does, to reach Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / 10;
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (value < multiplicationLimit) {
+                throw this.syntaxError("Number out of range");
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                throw this.syntaxError("Number out of range");
+            }
+            value -= digit;
+            c = this.next();
+        }
+        if (c == '.' || c == 'e' || c == 'E') {
+            throw this.syntaxError("Expected an integer");
+        }
+        this.back();
+        return negative ? value : -value;
+    }
+
+
+    /**
+     * Get the next value as an int, without making a String or Integer of
+     * it.
+     * @throws JSONException If the next value is not an integer or does not
+     *  fit in an int.
+     *
+     * @return An int.
+     */
+    public int nextInt() throws JSONException {
+        long value = this.nextLong();
+        if (value != (int) value) {
+            throw this.syntaxError("Number out of range");
+        }
+        return (int) value;
+    }
+
+
+    /**
+     * Choose whether short string values, like keys, are replaced by a
+     * shared copy from the tokener's symbol table, so that values repeated
+     * across the objects of a text share one String. Keys are always
+     * shared.
+     *
+     * @param canonicalValues true to share string values of up to 32
+     *  characters.
+     */
+    public void setCanonicalValues(boolean canonicalValues) {
+        this.canonicalValues = canonicalValues;
+    }
+
+
+    /**
+     * Get the shared copy of a key read by this tokener.
+     *
+     * @param key A key.
+     * @return An equal key, the same instance for every equal key of the
+     *  text up to the capacity of the symbol table.
+     */
+    String canonicalKey(String key) {
+        return this.symbols().get(key, SymbolTable.MAX_KEY_LENGTH);
+    }
+
+
+    private SymbolTable symbols() {
+        if (this.symbols == null) {
+            this.symbols = new SymbolTable();
+        }
+        return this.symbols;
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
@@ -20,7 +20,9 @@
 package com.appdynamics.JSON;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 
 /*
 Copyright (c) 2006 JSON.org
@@ -120,6 +122,24 @@ public class JSONWriter {
         this.writer = w;
     }
 
+    /**
+     * Make a fresh JSONWriter that writes UTF-8 encoded text to a stream
+     * through a JSONOutput. The text is flushed to the stream when the
+     * outermost array or object is ended.
+     */
+    public JSONWriter(OutputStream stream) {
+        this(new JSONOutput(stream));
+    }
+
+    /**
+     * Make a fresh JSONWriter that writes UTF-8 encoded text to a channel
+     * through a JSONOutput. The text is flushed to the channel when the
+     * outermost array or object is ended.
+     */
+    public JSONWriter(WritableByteChannel channel) {
+        this(new JSONOutput(channel));
+    }
+
     /**
      * Append a value.
      * @param string A string value.
@@ -130,22 +150,42 @@ public class JSONWriter {
         if (string == null) {
             throw new JSONException("Null pointer");
         }
-        if (this.mode == 'o' || this.mode == 'a') {
+        this.beforeValue();
+        try {
+            this.writer.write(string);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.afterValue();
+    }
+
+    /**
+     * Check that a value may be appended and write the comma before it.
+     * @throws JSONException If the value is out of sequence.
+     */
+    private void beforeValue() throws JSONException {
+        if (this.mode != 'o' && this.mode != 'a') {
+            throw new JSONException("Value out of sequence.");
+        }
+        if (this.comma && this.mode == 'a') {
             try {
-                if (this.comma && this.mode == 'a') {
-                    this.writer.write(',');
-                }
-                this.writer.write(string);
+                this.writer.write(',');
             } catch (IOException e) {
                 throw new JSONException(e);
             }
-            if (this.mode == 'o') {
-                this.mode = 'k';
-            }
-            this.comma = true;
-            return this;
         }
-        throw new JSONException("Value out of sequence.");
+    }
+
+    /**
+     * Update the state once a value has been appended.
+     * @return this
+     */
+    private JSONWriter afterValue() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        }
+        this.comma = true;
+        return this;
     }
 
     /**
@@ -183,6 +223,9 @@ public class JSONWriter {
         this.pop(mode);
         try {
             this.writer.write(c);
+            if (this.mode == 'd' && this.writer instanceof JSONOutput) {
+                this.writer.flush();
+            }
         } catch (IOException e) {
             throw new JSONException(e);
         }
@@ -228,7 +271,7 @@ public class JSONWriter {
                 if (this.comma) {
                     this.writer.write(',');
                 }
-                this.writer.write(JSONObject.quote(string));
+                JSONObject.quote(string, this.writer);
                 this.writer.write(':');
                 this.comma = false;
                 this.mode = 'o';
@@ -319,7 +362,19 @@ public class JSONWriter {
      * @throws JSONException If the number is not finite.
      */
     public JSONWriter value(double d) throws JSONException {
-        return this.value(new Double(d));
+        if (!(this.writer instanceof JSONOutput)) {
+            return this.value(new Double(d));
+        }
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        this.beforeValue();
+        try {
+            ((JSONOutput) this.writer).writeNumber(d);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.afterValue();
     }
 
     /**
@@ -329,18 +384,40 @@ public class JSONWriter {
      * @throws JSONException
      */
     public JSONWriter value(long l) throws JSONException {
-        return this.append(Long.toString(l));
+        if (!(this.writer instanceof JSONOutput)) {
+            return this.append(Long.toString(l));
+        }
+        this.beforeValue();
+        try {
+            ((JSONOutput) this.writer).writeNumber(l);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.afterValue();
     }
 
 
     /**
-     * Append an object value.
+     * Append an object value. Strings, numbers, JSONObjects and JSONArrays
+     * are written to the writer directly rather than made into a String
+     * first.
      * @param object The object to append. It can be null, or a Boolean, Number,
      *   String, JSONObject, or JSONArray, or an object that implements JSONString.
      * @return this
      * @throws JSONException If the value is out of sequence.
      */
     public JSONWriter value(Object object) throws JSONException {
+        if (object instanceof String || object instanceof Number ||
+                object instanceof JSONObject || object instanceof JSONArray) {
+            JSONObject.testValidity(object);
+            this.beforeValue();
+            try {
+                JSONObject.writeValue(this.writer, object, 0, 0);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            return this.afterValue();
+        }
         return this.append(JSONObject.valueToString(object));
     }
 }
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+/**
+ * The undecoded value of a member of a lazy JSONObject: the range of the
+ * source text that holds it. See JSONObject.lazy.
+ * <p>
+ * Creating a lazy object scans its text once to find where each value
+ * starts and ends. The scan checks the syntax of the object itself and
+ * that nested values have balanced brackets and terminated strings, but
+ * does not decode them. A value is decoded with a JSONTokener the first
+ * time it is read, and a nested object is itself decoded lazily.
+ */
+final class LazyValue {
+
+    private final String source;
+    private final int start;
+    private final int end;
+
+
+    private LazyValue(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+
+    /**
+     * Decode the value.
+     *
+     * @return The value, as JSONObject.get would return it.
+     * @throws JSONException If the value is not valid JSON.
+     */
+    Object decode() throws JSONException {
+        if (this.source.charAt(this.start) == '{') {
+            return scanObject(this.source, this.start, this.end);
+        }
+        return new JSONTokener(this.source.substring(this.start, this.end)).nextValue();
+    }
+
+
+    /**
+     * Scan the text of an object, recording the range of each value.
+     *
+     * @param source The text.
+     * @param start The index of the opening brace, after any whitespace.
+     * @param end The index after the last character that may be scanned.
+     * @return A JSONObject whose values are LazyValues.
+     * @throws JSONException If the text is not an object or the object has
+     *  a syntax error.
+     */
+    static JSONObject scanObject(String source, int start, int end) throws JSONException {
+        JSONObject object = new JSONObject();
+        int i = skipWhitespace(source, start, end);
+        if (i == end || source.charAt(i) != '{') {
+            throw syntaxError("A JSONObject text must begin with '{'", i);
+        }
+        i = skipWhitespace(source, i + 1, end);
+        if (i < end && source.charAt(i) == '}') {
+            return object;
+        }
+        for (;;) {
+            if (i == end || source.charAt(i) != '"') {
+                throw syntaxError("Expected a key", i);
+            }
+            int keyEnd = skipString(source, i, end);
+            int escape = source.indexOf('\\', i);
+            String key = escape >= 0 && escape < keyEnd
+                ? new JSONTokener(source.substring(i + 1, keyEnd)).nextString('"')
+                : source.substring(i + 1, keyEnd - 1);
+
+            i = skipWhitespace(source, keyEnd, end);
+            if (i == end || source.charAt(i) != ':') {
+                throw syntaxError("Expected a ':' after a key", i);
+            }
+            int valueStart = skipWhitespace(source, i + 1, end);
+            int valueEnd = skipValue(source, valueStart, end);
+            object.putLazy(key, new LazyValue(source, valueStart, valueEnd));
+
+            i = skipWhitespace(source, valueEnd, end);
+            if (i == end) {
+                throw syntaxError("A JSONObject text must end with '}'", i);
+            }
+            char c = source.charAt(i);
+            if (c == '}') {
+                return object;
+            }
+            if (c != ',') {
+                throw syntaxError("Expected a ',' or '}'", i);
+            }
+            i = skipWhitespace(source, i + 1, end);
+        }
+    }
+
+
+    /**
+     * Find the end of the value that starts at an index.
+     *
+     * @return The index after the last character of the value.
+     */
+    private static int skipValue(String source, int i, int end) throws JSONException {
+        if (i == end) {
+            throw syntaxError("Missing value", i);
+        }
+        char c = source.charAt(i);
+        if (c == '"') {
+            return skipString(source, i, end);
+        }
+        if (c == '{' || c == '[') {
+            int nesting = 0;
+            while (i < end) {
+                c = source.charAt(i);
+                if (c == '"') {
+                    i = skipString(source, i, end);
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    nesting += 1;
+                } else if (c == '}' || c == ']') {
+                    nesting -= 1;
+                    if (nesting == 0) {
+                        return i + 1;
+                    }
+                }
+                i += 1;
+            }
+            throw syntaxError("Unterminated value", i);
+        }
+        int valueStart = i;
+        while (i < end) {
+            c = source.charAt(i);
+            if (c <= ' ' || c == ',' || c == '}' || c == ']' || c == ':') {
+                break;
+            }
+            i += 1;
+        }
+        if (i == valueStart) {
+            throw syntaxError("Missing value", i);
+        }
+        return i;
+    }
+
+
+    /**
+     * Find the end of the string whose opening quote is at an index.
+     *
+     * @return The index after the closing quote.
+     */
+    private static int skipString(String source, int i, int end) throws JSONException {
+        for (i += 1; i < end; i += 1) {
+            char c = source.charAt(i);
+            if (c == '\\') {
+                i += 1;
+            } else if (c == '"') {
+                return i + 1;
+            }
+        }
+        throw syntaxError("Unterminated string", i);
+    }
+
+
+    private static int skipWhitespace(String source, int i, int end) {
+        while (i < end && source.charAt(i) <= ' ') {
+            i += 1;
+        }
+        return i;
+    }
+
+
+    private static JSONException syntaxError(String message, int index) {
+        return new JSONException(message + " at character " + index);
+    }
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+/**
+ * The parts of JSONPullParser and JSONByteParser that do not depend on how
+ * the text is read: the JSON number grammar and the conversion of a number
+ * held in a parser's text buffer, and the bookkeeping of nextMatch, which
+ * records for each level of nesting the paths that can still select a
+ * value below it.
+ * <p>
+ * An instance belongs to one parser and is not thread-safe.
+ */
+final class ParserSupport {
+
+    /**
+     * Returned by matchValue for a container nothing in which can be
+     * selected, which the parser skips.
+     */
+    static final int SKIP = -2;
+
+    /**
+     * Integers with up to this many digits always fit in a long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * Decimals with up to this many significant digits and a power of ten
+     * in this table are converted exactly with one multiplication or
+     * division, the result being the correctly rounded double.
+     */
+    private static final int MAX_DOUBLE_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private int[] pathMasks = new int[16];
+    private int fieldMask;
+    private JSONPath[] singlePath;
+
+
+    /**
+     * Check text against the JSON number grammar:
+     * -? digits (. digits)? ([eE] [+-]? digits)?
+     *
+     * @param t The text.
+     * @param n The length of the text.
+     * @return true if the text is a JSON number.
+     */
+    static boolean isNumber(char[] t, int n) {
+        int i = 0;
+        if (i < n && t[i] == '-') {
+            i += 1;
+        }
+        int digits = i;
+        while (i < n && t[i] >= '0' && t[i] <= '9') {
+            i += 1;
+        }
+        if (i == digits) {
+            return false;
+        }
+        if (i < n && t[i] == '.') {
+            i += 1;
+            digits = i;
+            while (i < n && t[i] >= '0' && t[i] <= '9') {
+                i += 1;
+            }
+            if (i == digits) {
+                return false;
+            }
+        }
+        if (i < n && (t[i] == 'e' || t[i] == 'E')) {
+            i += 1;
+            if (i < n && (t[i] == '+' || t[i] == '-')) {
+                i += 1;
+            }
+            digits = i;
+            while (i < n && t[i] >= '0' && t[i] <= '9') {
+                i += 1;
+            }
+            if (i == digits) {
+                return false;
+            }
+        }
+        return i == n;
+    }
+
+
+    /**
+     * Convert a JSON number without a fraction or exponent to a long. An
+     * integer too large for a long is converted through a double.
+     *
+     * @param t The text of the number.
+     * @param n The length of the text.
+     * @return The long value.
+     */
+    static long longValue(char[] t, int n) {
+        if (fitsLong(t, n)) {
+            return accumulate(t, n);
+        }
+        String s = new String(t, 0, n);
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(s);
+        }
+    }
+
+
+    /**
+     * Convert a JSON number to a double. Numbers with few enough significant
+     * digits are converted without making a String of them.
+     *
+     * @param t The text of the number.
+     * @param n The length of the text.
+     * @return The double value.
+     */
+    static double doubleValue(char[] t, int n) {
+        double value = fastDoubleValue(t, n);
+        if (!Double.isNaN(value)) {
+            return value;
+        }
+        return Double.parseDouble(new String(t, 0, n));
+    }
+
+
+    /**
+     * Convert a JSON number to the object JSONObject.get would return for
+     * it: an Integer or Long if it is an integer that fits, otherwise
+     * whatever JSONObject.stringToValue makes of it.
+     *
+     * @param t The text of the number.
+     * @param n The length of the text.
+     * @param integral Whether the number has neither a fraction nor an
+     *  exponent.
+     * @return The value.
+     */
+    static Object numberValue(char[] t, int n, boolean integral) {
+        if (integral && fitsLong(t, n)) {
+            long value = accumulate(t, n);
+            if (value == (int) value) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        }
+        return JSONObject.stringToValue(new String(t, 0, n));
+    }
+
+
+    /**
+     * Determine whether an integer has few enough digits to be accumulated
+     * in a long without checking for overflow.
+     */
+    private static boolean fitsLong(char[] t, int n) {
+        int digits = n - (t[0] == '-' ? 1 : 0);
+        return digits <= MAX_LONG_DIGITS;
+    }
+
+
+    /**
+     * Accumulate the digits of an integer.
+     */
+    private static long accumulate(char[] t, int n) {
+        boolean negative = t[0] == '-';
+        long value = 0;
+        for (int i = negative ? 1 : 0; i < n; i += 1) {
+            value = value * 10 + (t[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+
+    /**
+     * Convert a number without making a String of it, if that can be done
+     * exactly.
+     *
+     * @return The double value, or NaN if the number has too many
+     *  significant digits or too large an exponent, in which case it has
+     *  to be handed to Double.parseDouble.
+     */
+    private static double fastDoubleValue(char[] t, int n) {
+        boolean negative = t[0] == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        int i = negative ? 1 : 0;
+        for (; i < n; i += 1) {
+            char c = t[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') {
+                    digits += 1;
+                    if (digits > MAX_DOUBLE_DIGITS) {
+                        return Double.NaN;
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    scale -= 1;
+                }
+            } else if (c == '.') {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (i < n) {
+            i += 1;
+            boolean negativeExponent = t[i] == '-';
+            if (negativeExponent || t[i] == '+') {
+                i += 1;
+            }
+            int exponent = 0;
+            for (; i < n; i += 1) {
+                exponent = exponent * 10 + (t[i] - '0');
+                if (exponent >= POWERS_OF_TEN.length * 2) {
+                    return Double.NaN;
+                }
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (scale >= POWERS_OF_TEN.length || -scale >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        double value = scale < 0
+            ? mantissa / POWERS_OF_TEN[-scale]
+            : mantissa * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+
+    /**
+     * Wrap a single path in an array for nextMatch(JSONPath[]), reusing the
+     * array across calls.
+     *
+     * @param path The path.
+     * @return An array holding only the path.
+     */
+    JSONPath[] single(JSONPath path) {
+        if (this.singlePath == null) {
+            this.singlePath = new JSONPath[1];
+        }
+        this.singlePath[0] = path;
+        return this.singlePath;
+    }
+
+
+    /**
+     * Get the mask that selects all of the paths passed to nextMatch.
+     *
+     * @param paths The paths.
+     * @return A mask with one bit per path.
+     * @throws JSONException If there are more than 32 paths.
+     */
+    static int all(JSONPath[] paths) throws JSONException {
+        if (paths.length > 32) {
+            throw new JSONException("At most 32 paths can be matched at once");
+        }
+        return paths.length == 32 ? -1 : (1 << paths.length) - 1;
+    }
+
+
+    /**
+     * Determine whether any path can select a field of the object at a
+     * depth, that is whether matchField needs the text of its name.
+     *
+     * @param depth The depth of the object the field belongs to.
+     * @return true if a path can select a field of the object.
+     */
+    boolean canSelectField(int depth) {
+        return this.pathMasks[depth] != 0;
+    }
+
+
+    /**
+     * Record which paths select a field, for matchValue to pick up when the
+     * parser reaches the field's value.
+     *
+     * @param paths The paths passed to nextMatch.
+     * @param depth The depth of the object the field belongs to.
+     * @param name The text of the field name. It is only read if
+     *  canSelectField(depth) is true.
+     * @param nameLength The length of the field name.
+     * @return true if any path selects the field, false if its value can be
+     *  skipped.
+     */
+    boolean matchField(JSONPath[] paths, int depth, char[] name, int nameLength) {
+        this.fieldMask = 0;
+        int mask = this.pathMasks[depth];
+        for (int i = 0; i < paths.length; i += 1) {
+            if ((mask & (1 << i)) != 0 && paths[i].matchesField(depth - 1, name, nameLength)) {
+                this.fieldMask |= 1 << i;
+            }
+        }
+        return this.fieldMask != 0;
+    }
+
+
+    /**
+     * Find the paths that select the value the parser has reached, and for
+     * a container the paths that can select a value inside it.
+     *
+     * @param paths The paths passed to nextMatch.
+     * @param all The mask returned by all(paths).
+     * @param level The number of containers around the value.
+     * @param inObject Whether the value is the value of a field.
+     * @param container Whether the value is an object or array.
+     * @return The index in paths of the path that selected the value, the
+     *  lowest one if several did, SKIP for a container nothing in which can
+     *  be selected, or -1 otherwise.
+     */
+    int matchValue(JSONPath[] paths, int all, int level, boolean inObject, boolean container) {
+        // paths whose steps so far lead to this value
+        int candidates;
+        if (level == 0) {
+            candidates = all;
+        } else if (inObject) {
+            candidates = this.fieldMask;
+        } else {
+            candidates = 0;
+            int mask = this.pathMasks[level];
+            for (int i = 0; i < paths.length; i += 1) {
+                if ((mask & (1 << i)) != 0 && paths[i].matchesElement(level - 1)) {
+                    candidates |= 1 << i;
+                }
+            }
+        }
+        int matched = 0;
+        int deeper = 0;
+        for (int i = 0; i < paths.length; i += 1) {
+            if ((candidates & (1 << i)) != 0) {
+                if (paths[i].length() == level) {
+                    matched |= 1 << i;
+                } else if (paths[i].length() > level) {
+                    deeper |= 1 << i;
+                }
+            }
+        }
+
+        if (container) {
+            if (matched == 0 && deeper == 0) {
+                return SKIP;
+            }
+            int depth = level + 1;
+            if (depth == this.pathMasks.length) {
+                int[] grown = new int[this.pathMasks.length * 2];
+                System.arraycopy(this.pathMasks, 0, grown, 0, depth);
+                this.pathMasks = grown;
+            }
+            this.pathMasks[depth] = deeper;
+        }
+        return matched != 0 ? Integer.numberOfTrailingZeros(matched) : -1;
+    }
+}
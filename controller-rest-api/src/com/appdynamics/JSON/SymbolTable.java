@@ -0,0 +1,129 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+/**
+ * A bounded table of canonical strings, used by a parser so that the keys
+ * of the many objects of a response, and optionally their short string
+ * values, share one String instance each instead of one copy per object.
+ * A string is looked up from the characters in a parser's buffer, so a
+ * string that is already in the table is returned without making a new
+ * one. Once the table is full, or for strings longer than the limit given
+ * by the caller, new strings are returned uncached.
+ * <p>
+ * A table belongs to one parser and is not thread-safe.
+ */
+final class SymbolTable {
+
+    /**
+     * The longest key that is canonicalized.
+     */
+    static final int MAX_KEY_LENGTH = 64;
+
+    /**
+     * The longest string value that is canonicalized.
+     */
+    static final int MAX_VALUE_LENGTH = 32;
+
+    private static final int CAPACITY = 2048;
+    private static final int MAX_SYMBOLS = CAPACITY / 2;
+
+    private final String[] symbols = new String[CAPACITY];
+    private int count;
+
+
+    /**
+     * Get the canonical string for some characters.
+     *
+     * @param chars A buffer holding the characters.
+     * @param length The number of characters.
+     * @param maxLength The longest string to look up.
+     * @return The canonical string, or a new string if it is too long or the
+     *  table is full.
+     */
+    String get(char[] chars, int length, int maxLength) {
+        if (length > maxLength) {
+            return new String(chars, 0, length);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i += 1) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = CAPACITY - 1;
+        for (int bucket = spread(hash) & mask; ; bucket = (bucket + 1) & mask) {
+            String symbol = this.symbols[bucket];
+            if (symbol == null) {
+                String string = new String(chars, 0, length);
+                if (this.count < MAX_SYMBOLS) {
+                    this.symbols[bucket] = string;
+                    this.count += 1;
+                }
+                return string;
+            }
+            if (symbol.length() == length && symbol.hashCode() == hash && equals(symbol, chars, length)) {
+                return symbol;
+            }
+        }
+    }
+
+
+    /**
+     * Get the canonical string equal to a string.
+     *
+     * @param string A string.
+     * @param maxLength The longest string to look up.
+     * @return The canonical string, which is string itself if it is new,
+     *  too long or the table is full.
+     */
+    String get(String string, int maxLength) {
+        if (string.length() > maxLength) {
+            return string;
+        }
+        int mask = CAPACITY - 1;
+        for (int bucket = spread(string.hashCode()) & mask; ; bucket = (bucket + 1) & mask) {
+            String symbol = this.symbols[bucket];
+            if (symbol == null) {
+                if (this.count < MAX_SYMBOLS) {
+                    this.symbols[bucket] = string;
+                    this.count += 1;
+                }
+                return string;
+            }
+            if (symbol.equals(string)) {
+                return symbol;
+            }
+        }
+    }
+
+
+    private static boolean equals(String symbol, char[] chars, int length) {
+        for (int i = 0; i < length; i += 1) {
+            if (symbol.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+/**
+ * Receives the applications whose listing could not be fetched while the toolkit crawled all
+ * applications, for example in getBTs(), getTiers() or getNodes(). The crawl carries on
+ * without the failed applications.
+ */
+public interface CrawlErrorHandler
+{
+	/**
+	 * Called once per failed application, on the thread that requested the crawl
+	 * @param 	app			Name of the application whose listing failed
+	 * @param 	listing		Kind of listing that failed: "tiers", "business-transactions" or "nodes"
+	 * @param 	cause		Exception raised while fetching or parsing the listing
+	 */
+	void applicationFailed(String app, String listing, Exception cause);
+}
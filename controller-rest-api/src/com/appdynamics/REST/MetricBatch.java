@@ -0,0 +1,221 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces metric queries into as few metric-data requests as possible.
+ *
+ * Queries of the same application and time range whose paths differ in a single segment, other than
+ * the metric name, are sent as one request in which that segment is replaced by a wildcard. The ART of
+ * all business transactions of one tier becomes a single request, while the combined request never
+ * returns more than the siblings of the paths asked for. Queries whose paths differ in more than one
+ * segment are not combined, as a request with several wildcards can return the metrics of every tier
+ * or backend of the application. The values returned for a combined request are handed back to each
+ * query whose path matches the returned metric path.
+ */
+class MetricBatch
+{
+	private final List<Group> groups = new ArrayList<Group>();
+
+	/**
+	 * Groups by application, time range and path with one segment left out, see {@link #key}
+	 */
+	private final Map<String, Group> index = new HashMap<String, Group>();
+
+	MetricBatch(List<MetricQuery> queries)
+	{
+		for (MetricQuery query : queries)
+		{
+			String[] segments = split(query.getMetricPath());
+
+			Group group = null;
+			for (int i = 0; i < segments.length - 1 && group == null; i++)
+			{
+				group = index.get(key(query, segments, i));
+				if (group != null && !group.add(query, segments, i))
+				{
+					group = null;
+				}
+			}
+
+			if (group == null)
+			{
+				group = new Group(query, segments);
+				groups.add(group);
+				// until a second query joins it, the group may vary in any segment but the metric name
+				for (int i = 0; i < segments.length - 1; i++)
+				{
+					index.put(key(query, segments, i), group);
+				}
+			}
+			else if (group.varying >= 0)
+			{
+				// the segment that varies is fixed now, the group no longer matches on the others
+				String[] first = split(group.first.getMetricPath());
+				for (int i = 0; i < first.length - 1; i++)
+				{
+					String key = key(group.first, first, i);
+					if (i != group.varying && index.get(key) == group)
+					{
+						index.remove(key);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return		The requests to send, one per group of queries
+	 */
+	List<MetricQuery> getRequests()
+	{
+		List<MetricQuery> requests = new ArrayList<MetricQuery>(groups.size());
+		for (Group group : groups)
+		{
+			requests.add(group.getRequest());
+		}
+		return requests;
+	}
+
+	/**
+	 * @return		The queries answered by the request at the same position in {@link #getRequests()}
+	 */
+	List<List<MetricQuery>> getQueries()
+	{
+		List<List<MetricQuery>> queries = new ArrayList<List<MetricQuery>>(groups.size());
+		for (Group group : groups)
+		{
+			queries.add(group.queries);
+		}
+		return queries;
+	}
+
+	/**
+	 * @return		True if the metric path matches the path of the query, in which wildcards match any segment
+	 */
+	static boolean matches(MetricQuery query, String metricPath)
+	{
+		String[] pattern = split(query.getMetricPath());
+		String[] segments = split(metricPath);
+		if (pattern.length != segments.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < pattern.length; i++)
+		{
+			if (!MetricPaths.WILDCARD.equals(pattern[i]) && !pattern[i].trim().equals(segments[i].trim()))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String[] split(String metricPath)
+	{
+		return metricPath.trim().split("\\|", -1);
+	}
+
+	/**
+	 * @return		Application, time range and metric path of the query without the segment at position skip
+	 */
+	private static String key(MetricQuery query, String[] segments, int skip)
+	{
+		StringBuilder key = new StringBuilder(128);
+		key.append(query.getApp()).append('\n').append(query.getTimeRangeParameters()).append('\n').append(skip);
+		for (int i = 0; i < segments.length; i++)
+		{
+			key.append('|');
+			if (i != skip)
+			{
+				key.append(segments[i]);
+			}
+		}
+		return key.toString();
+	}
+
+	private static class Group
+	{
+		final MetricQuery first;
+		final String[] pattern;
+		final List<MetricQuery> queries = new ArrayList<MetricQuery>();
+
+		/**
+		 * Position of the segment replaced by a wildcard, -1 while all queries have the same path
+		 */
+		int varying = -1;
+
+		Group(MetricQuery first, String[] segments)
+		{
+			this.first = first;
+			this.pattern = segments.clone();
+			this.queries.add(first);
+		}
+
+		/**
+		 * Adds a query whose path equals the pattern except maybe in the segment at position i
+		 * @return		False if the group already varies in another segment
+		 */
+		boolean add(MetricQuery query, String[] segments, int i)
+		{
+			if (!pattern[i].equals(segments[i]))
+			{
+				if (varying == -1)
+				{
+					varying = i;
+					pattern[i] = MetricPaths.WILDCARD;
+				}
+				else if (varying != i)
+				{
+					return false;
+				}
+			}
+			if (!queries.contains(query))
+			{
+				queries.add(query);
+			}
+			return true;
+		}
+
+		MetricQuery getRequest()
+		{
+			if (varying == -1)
+			{
+				return first;
+			}
+
+			StringBuilder path = new StringBuilder();
+			for (int i = 0; i < pattern.length; i++)
+			{
+				if (i > 0)
+				{
+					path.append('|');
+				}
+				path.append(pattern[i]);
+			}
+			return first.withMetricPath(path.toString());
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+/**
+ * Builds the metric paths of the controller metric browser.
+ *
+ * Any segment may be the WILDCARD, in which case the controller returns one result per matching
+ * metric, e.g. btMetric("Tier", WILDCARD, CALLS_PER_MINUTE) returns the load of every business
+ * transaction of the tier.
+ */
+public class MetricPaths
+{
+	public static final String WILDCARD = "*";
+
+	public static final String AVERAGE_RESPONSE_TIME = "Average Response Time (ms)";
+	public static final String NORMAL_AVERAGE_RESPONSE_TIME = "Normal Average Response Time (ms)";
+	public static final String CALLS_PER_MINUTE = "Calls per Minute";
+	public static final String ERRORS_PER_MINUTE = "Errors per Minute";
+
+	private static final String BUSINESS_TRANSACTIONS = "Business Transaction Performance|Business Transactions|";
+	private static final String OVERALL = "Overall Application Performance|";
+
+	/**
+	 * @param 	tierName	Tier the business transaction belongs to
+	 * @param 	btName		Business Transaction Name
+	 * @param 	metric		Metric name, e.g. NORMAL_AVERAGE_RESPONSE_TIME
+	 * @return				Path of a business transaction metric
+	 */
+	public static String btMetric(String tierName, String btName, String metric)
+	{
+		return BUSINESS_TRANSACTIONS + tierName + "|" + btName + "|" + metric;
+	}
+
+	/**
+	 * @param 	metric		Metric name, e.g. AVERAGE_RESPONSE_TIME
+	 * @return				Path of an application metric
+	 */
+	public static String appMetric(String metric)
+	{
+		return OVERALL + metric;
+	}
+
+	/**
+	 * @param 	tierName	Tier Name
+	 * @param 	metric		Metric name, e.g. AVERAGE_RESPONSE_TIME
+	 * @return				Path of a tier metric
+	 */
+	public static String tierMetric(String tierName, String metric)
+	{
+		return OVERALL + tierName + "|" + metric;
+	}
+}
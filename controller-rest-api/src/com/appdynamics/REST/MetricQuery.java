@@ -0,0 +1,166 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+/**
+ * A request for the values of one metric path of an application over a time range.
+ *
+ * The metric path may contain wildcards (see {@link MetricPaths}), so that one request to the
+ * controller returns the values of every matching metric.
+ */
+public class MetricQuery
+{
+	public static final String BEFORE_NOW = "BEFORE_NOW";
+	public static final String BETWEEN_TIMES = "BETWEEN_TIMES";
+
+	private final String app;
+	private final String metricPath;
+	private final String timeRangeType;
+	private final int duration;
+	private final long startTime;
+	private final long endTime;
+	private final boolean rollup;
+
+	private MetricQuery(String app, String metricPath, String timeRangeType, int duration, long startTime,
+			long endTime, boolean rollup)
+	{
+		this.app = app;
+		this.metricPath = metricPath;
+		this.timeRangeType = timeRangeType;
+		this.duration = duration;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.rollup = rollup;
+	}
+
+	/**
+	 * Queries a duration of minutes before the current time
+	 * @param 	app			Application Name or Application ID
+	 * @param 	metricPath	Metric path, may contain wildcards
+	 * @param 	duration	(Minutes) Duration to return the metric data
+	 * @param 	rollup		If true, value as single data point is returned.
+	 * 						If false, all the values within the specified time range are returned.
+	 */
+	public static MetricQuery beforeNow(String app, String metricPath, int duration, boolean rollup)
+	{
+		return new MetricQuery(app, metricPath, BEFORE_NOW, duration, 0, 0, rollup);
+	}
+
+	/**
+	 * Queries a specific time range
+	 * @param 	app			Application Name or Application ID
+	 * @param 	metricPath	Metric path, may contain wildcards
+	 * @param 	startTime	(Milliseconds) Start Time of the Range in UNIX epoch time
+	 * @param 	endTime		(Milliseconds) End Time of the Range in UNIX epoch time
+	 * @param 	rollup		If true, value as single data point is returned.
+	 * 						If false, all the values within the specified time range are returned.
+	 */
+	public static MetricQuery betweenTimes(String app, String metricPath, long startTime, long endTime,
+			boolean rollup)
+	{
+		return new MetricQuery(app, metricPath, BETWEEN_TIMES, 0, startTime, endTime, rollup);
+	}
+
+	/**
+	 * @return		A query of another metric path of the same application and time range
+	 */
+	public MetricQuery withMetricPath(String metricPath)
+	{
+		return new MetricQuery(app, metricPath, timeRangeType, duration, startTime, endTime, rollup);
+	}
+
+	public String getApp()
+	{
+		return app;
+	}
+
+	public String getMetricPath()
+	{
+		return metricPath;
+	}
+
+	public String getTimeRangeType()
+	{
+		return timeRangeType;
+	}
+
+	public int getDuration()
+	{
+		return duration;
+	}
+
+	public long getStartTime()
+	{
+		return startTime;
+	}
+
+	public long getEndTime()
+	{
+		return endTime;
+	}
+
+	public boolean isRollup()
+	{
+		return rollup;
+	}
+
+	/**
+	 * @return		Request parameters of the metric-data call, without the metric path
+	 */
+	String getTimeRangeParameters()
+	{
+		String range = BEFORE_NOW.equals(timeRangeType)
+				? "time-range-type=BEFORE_NOW&duration-in-mins=" + duration
+				: "time-range-type=BETWEEN_TIMES&start-time=" + startTime + "&end-time=" + endTime;
+		return range + "&rollup=" + rollup;
+	}
+
+	public boolean equals(Object o)
+	{
+		if (this == o)
+		{
+			return true;
+		}
+		if (!(o instanceof MetricQuery))
+		{
+			return false;
+		}
+		MetricQuery other = (MetricQuery) o;
+		return app.equals(other.app) && metricPath.equals(other.metricPath) && timeRangeType.equals(other.timeRangeType)
+				&& duration == other.duration && startTime == other.startTime && endTime == other.endTime
+				&& rollup == other.rollup;
+	}
+
+	public int hashCode()
+	{
+		int hash = app.hashCode();
+		hash = 31 * hash + metricPath.hashCode();
+		hash = 31 * hash + timeRangeType.hashCode();
+		hash = 31 * hash + duration;
+		hash = 31 * hash + (int) (startTime ^ (startTime >>> 32));
+		hash = 31 * hash + (int) (endTime ^ (endTime >>> 32));
+		return 31 * hash + (rollup ? 1 : 0);
+	}
+
+	public String toString()
+	{
+		return "[app: " + app + "; metricPath: " + metricPath + "; " + getTimeRangeParameters() + "]";
+	}
+}
@@ -19,11 +19,22 @@
 
 package com.appdynamics.REST;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.appdynamics.JSON.JSONArray;
 import com.appdynamics.JSON.JSONException;
 import com.appdynamics.JSON.JSONObject;
+import com.appdynamics.JSON.JSONPullParser;
 import com.appdynamics.TypeREST.ADApplication;
 import com.appdynamics.TypeREST.ADBusinessTransaction;
 import com.appdynamics.TypeREST.ADEntity;
@@ -31,22 +42,96 @@ import com.appdynamics.TypeREST.ADEvent;
 import com.appdynamics.TypeREST.ADMetric;
 import com.appdynamics.TypeREST.ADNode;
 import com.appdynamics.TypeREST.ADTier;
-import com.appdynamics.httprequest.HTTPRequestPoster;
+import com.appdynamics.httprequest.PoolStatistics;
+import com.appdynamics.httprequest.PooledHTTPTransport;
 
 public class RESTToolkit
 {
-	private ArrayList<ADApplication> applications;
-	private ArrayList<ADBusinessTransaction> BTs;
-	private ArrayList<ADMetric> metrics;
-	private ArrayList<ADNode> nodes;
-	private ArrayList<ADTier> tiers;
-	private ArrayList<ADEvent> events;
+	/**
+	 * Number of threads running the *Async queries, matching the default number of pooled connections per controller.
+	 *
+	 * The *Async queries are the blocking queries run on another thread, not a non-blocking client: each one
+	 * occupies a thread of the async executor until the controller has answered. With the default executor at
+	 * most this many queries are in flight at once and further ones wait in its queue. See
+	 * {@link #setAsyncExecutor(Executor)} for running them on virtual threads.
+	 */
+	public static final int DEFAULT_ASYNC_THREADS = PooledHTTPTransport.DEFAULT_MAX_PER_HOST;
+
+	private final String controllerURL;
+	private final String params;
+	private final String username;
+	private final String password;
+	private final PooledHTTPTransport transport;
+	private final TopologyCache topologyCache;
+	private final TopologyResolver topology;
+	private final TopologyCrawler crawler;
+	private final ThreadPoolExecutor asyncPool;
+	private volatile Executor asyncExecutor;
+	private volatile TopologyIndex<ADBusinessTransaction> btIndex;
+	private volatile TopologyIndex<ADTier> tierIndex;
+	private volatile TopologyIndex<ADNode> nodeIndex;
+
+	// the lists the last queries returned, which the deprecated add* methods append to
+	private volatile ArrayList<ADApplication> applications;
+	private volatile ArrayList<ADBusinessTransaction> BTs;
+	private volatile ArrayList<ADTier> tiers;
+	private volatile ArrayList<ADNode> nodes;
+	private volatile ArrayList<ADMetric> metrics;
+	private volatile ArrayList<ADEvent> events;
+
+	private static final TopologyIndex.Keys<ADBusinessTransaction> BT_KEYS = new TopologyIndex.Keys<ADBusinessTransaction>()
+	{
+		public String id(ADBusinessTransaction bt)
+		{
+			return bt.id;
+		}
+
+		public String name(ADBusinessTransaction bt)
+		{
+			return bt.name;
+		}
+
+		public String group(ADBusinessTransaction bt)
+		{
+			return bt.tierName;
+		}
+	};
+
+	private static final TopologyIndex.Keys<ADTier> TIER_KEYS = new TopologyIndex.Keys<ADTier>()
+	{
+		public String id(ADTier tier)
+		{
+			return tier.id;
+		}
 
-	private String rawJSON;
-	private String controllerURL;
-	private String params;
-	private String username;
-	private String password;
+		public String name(ADTier tier)
+		{
+			return tier.name;
+		}
+
+		public String group(ADTier tier)
+		{
+			return null;
+		}
+	};
+
+	private static final TopologyIndex.Keys<ADNode> NODE_KEYS = new TopologyIndex.Keys<ADNode>()
+	{
+		public String id(ADNode node)
+		{
+			return node.id;
+		}
+
+		public String name(ADNode node)
+		{
+			return node.name;
+		}
+
+		public String group(ADNode node)
+		{
+			return node.tierName;
+		}
+	};
 
 	/**
 	 * AppDynamics Toolkit constructor to initialize user and controller information
@@ -66,11 +151,150 @@ public class RESTToolkit
 	 * @param	params 			Further parameters to specify type of return data
 	 */
 	public RESTToolkit(String username, String password, String controllerURL, String params)
+	{
+		this(username, password, controllerURL, params, new PooledHTTPTransport(username, password));
+	}
+
+	/**
+	 * AppDynamics Toolkit constructor that sends its requests through an existing transport.
+	 * Several toolkits talking to the same controller can share one transport and its connection pool.
+	 *
+	 * @param	username 		Username of the user making the request
+	 * @param	password 		Password of the user making the request
+	 * @param	controllerURL 	URL of the server from where the request is being made 
+	 * 							(i.e. http://localhost:8090)
+	 * @param	params 			Further parameters to specify type of return data
+	 * @param	transport		Pooled transport used for every controller request
+	 */
+	public RESTToolkit(String username, String password, String controllerURL, String params,
+			PooledHTTPTransport transport)
 	{
 		this.username = username;
 		this.password = password;
 		this.controllerURL = controllerURL;
 		this.params = params;
+		this.transport = transport;
+		this.topologyCache = new TopologyCache();
+		this.topology = new TopologyResolver(this);
+		this.crawler = new TopologyCrawler();
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.asyncPool = new ThreadPoolExecutor(DEFAULT_ASYNC_THREADS, DEFAULT_ASYNC_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), r ->
+				{
+					Thread thread = new Thread(r, "rest-toolkit-async-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.asyncPool.allowCoreThreadTimeOut(true);
+		this.asyncExecutor = asyncPool;
+	}
+
+	/**
+	 * Gets the usage of the connection pool the requests are sent through
+	 * @return			PoolStatistics - Connection, request, retry and timeout counters
+	 */
+	public PoolStatistics getPoolStatistics()
+	{
+		return transport.getPoolStatistics();
+	}
+
+	/**
+	 * Sets the connect and read timeouts of the controller connections
+	 * @param	connectTimeout	(Milliseconds) Longest wait for a connection, 0 for no limit
+	 * @param	readTimeout		(Milliseconds) Longest wait for data from the controller, 0 for no limit
+	 * @see PooledHTTPTransport#setTimeouts(int, int)
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		transport.setTimeouts(connectTimeout, readTimeout);
+	}
+
+	/**
+	 * Sets the time a single controller request may take, including its retries and reading the response.
+	 * A query that runs past it fails with a JSONException caused by a SocketTimeoutException.
+	 * @param	deadline		(Milliseconds) Time allowed per request, 0 for none
+	 * @see PooledHTTPTransport#setDeadline(long)
+	 */
+	public void setDeadline(long deadline)
+	{
+		transport.setDeadline(deadline);
+	}
+
+	/**
+	 * Sets how often and after which delays failed controller requests are repeated
+	 * @param	maxRetries		Number of times a request is repeated at most, 0 to never retry
+	 * @param	initialBackoff	(Milliseconds) Delay before the first retry, doubled for each further one
+	 * @param	maxBackoff		(Milliseconds) Longest delay between two attempts
+	 * @see PooledHTTPTransport#setRetries(int, long, long)
+	 */
+	public void setRetries(int maxRetries, long initialBackoff, long maxBackoff)
+	{
+		transport.setRetries(maxRetries, initialBackoff, maxBackoff);
+	}
+
+	/**
+	 * Gets the cache holding the application, tier, business transaction and node listings.
+	 * Use it to tune the time to live of each listing, invalidate them and read the hit and miss counters.
+	 * @return			TopologyCache - Topology cache of this toolkit
+	 */
+	public TopologyCache getTopologyCache()
+	{
+		return topologyCache;
+	}
+
+	/**
+	 * Drops the cached applications, tiers, business transactions and nodes,
+	 * so that they are fetched again from the controller on next use.
+	 */
+	public void invalidateTopology()
+	{
+		topologyCache.invalidate();
+	}
+
+	/**
+	 * Sets how many applications are queried at the same time when getBTs(), getTiers() and
+	 * getNodes() fetch the listings of every application. Defaults to 8.
+	 * @param	parallelism		Maximum number of concurrent listing requests, at least 1
+	 */
+	public void setCrawlParallelism(int parallelism)
+	{
+		crawler.setParallelism(parallelism);
+	}
+
+	/**
+	 * Sets the handler told about applications whose listing could not be fetched while
+	 * getBTs(), getTiers() and getNodes() query every application. Those calls return the
+	 * entities of the other applications. The default handler prints the stack trace.
+	 * @param	errorHandler	Handler called once per failed application
+	 */
+	public void setCrawlErrorHandler(CrawlErrorHandler errorHandler)
+	{
+		crawler.setErrorHandler(errorHandler);
+	}
+
+	/**
+	 * Sets the executor the *Async queries run on. Each query blocks a thread of the executor while it
+	 * waits for the controller, so the executor bounds how many queries are in flight. With
+	 * VirtualThreads.newVirtualThreadPerTaskExecutor() on Java 21 or later every query runs on its own
+	 * virtual thread, which blocks without holding a platform thread; the queries still wait for one
+	 * of the connections of the transport. The caller remains responsible for shutting the executor down.
+	 * @param	executor		Executor of the async queries, or null for the default pool of DEFAULT_ASYNC_THREADS threads
+	 */
+	public void setAsyncExecutor(Executor executor)
+	{
+		this.asyncExecutor = executor == null ? asyncPool : executor;
+	}
+
+	/**
+	 * Closes the pooled controller connections. The toolkit cannot be used afterwards.
+	 */
+	public void shutdown()
+	{
+		topologyCache.shutdown();
+		crawler.shutdown();
+		asyncPool.shutdownNow();
+		transport.shutdown();
 	}
 
 	/**
@@ -80,19 +304,29 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADApplication> getApplications() throws JSONException
 	{
-		applications = new ArrayList<ADApplication>();
-
-		rawJSON = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL +
-				"/controller/rest/applications", "output=JSON&" + params, username, password);
+		return applications = new ArrayList<ADApplication>(getCachedApplications());
+	}
 
-		JSONArray parsedJSON = new JSONArray(rawJSON);
+	/**
+	 * Gets the cached application listing, loading it on first use. Callers must not modify it.
+	 */
+	ArrayList<ADApplication> getCachedApplications() throws JSONException
+	{
+		return getCachedApplications(null);
+	}
 
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
+	/**
+	 * Gets the cached application listing, counting in stores whether it had to be loaded
+	 */
+	private ArrayList<ADApplication> getCachedApplications(AtomicInteger stores) throws JSONException
+	{
+		return topologyCache.get(TopologyCache.APPLICATIONS, null, new TopologyCache.Loader<ArrayList<ADApplication>>()
 		{
-			addApplication(parsedJSON.getJSONObject(jArrayPos));	
-		}
-
-		return applications;
+			public ArrayList<ADApplication> load() throws JSONException
+			{
+				return fetchApplications();
+			}
+		}, stores);
 	}
 
 
@@ -122,24 +356,20 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADEvent> getEvents(String app, long startTime, long endTime, String types, String severities) throws JSONException
 	{
-		getApplications();
-		
-		events = new ArrayList<ADEvent>();
-		
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
+		JSONPullParser parser = openJSON(controllerURL
 				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
 				+ "/events", "time-range-type=BETWEEN_TIMES&start-time=" + startTime + "&end-time=" + endTime
 				+ "&event-types=" + types + "&severities=" + severities
-				+ "&output=JSON&" + params, username, password);
-		
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
+				+ "&output=JSON&" + params);
+		try
 		{
-			addEvent(parsedJSON.getJSONObject(jArrayPos));	
+			// events are bound one at a time as they arrive
+			return events = TypeBinders.readList(parser, TypeBinders.EVENT);
+		}
+		finally
+		{
+			parser.close();
 		}
-
-		return events;
 	}
 
 	/**
@@ -166,24 +396,20 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADEvent> getEvents(String app, int time, String types, String severities) throws JSONException
 	{
-		getApplications();
-		
-		events = new ArrayList<ADEvent>();
-		
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
+		JSONPullParser parser = openJSON(controllerURL
 				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
 				+ "/events", "time-range-type=BEFORE_NOW&duration-in-mins=" + time
 				+ "&event-types=" + types + "&severities=" + severities
-				+ "&output=JSON&" + params, username, password);
-		
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
+				+ "&output=JSON&" + params);
+		try
 		{
-			addEvent(parsedJSON.getJSONObject(jArrayPos));	
+			// events are bound one at a time as they arrive
+			return events = TypeBinders.readList(parser, TypeBinders.EVENT);
+		}
+		finally
+		{
+			parser.close();
 		}
-
-		return events;
 	}
 
 	/**
@@ -194,18 +420,7 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADBusinessTransaction> getBTs() throws JSONException
 	{
-		getApplications();
-
-		ArrayList<ADBusinessTransaction> tmpBTs = new ArrayList<ADBusinessTransaction>();
-
-		for (ADApplication curApp : applications)
-		{
-			tmpBTs.addAll(getBTsFromApp(curApp.name));
-		}
-
-		BTs = tmpBTs;
-
-		return BTs;
+		return BTs = new ArrayList<ADBusinessTransaction>(getBTIndex().getAll());
 	}
 
 	/**
@@ -216,20 +431,32 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADBusinessTransaction> getBTsFromApp(String app) throws JSONException
 	{
-		BTs = new ArrayList<ADBusinessTransaction>();
-
-		rawJSON = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/business-transactions", "output=JSON&" + params, username, password);
+		return BTs = new ArrayList<ADBusinessTransaction>(getCachedBTsFromApp(app));
+	}
 
-		JSONArray parsedJSON = new JSONArray(rawJSON);
+	/**
+	 * Gets the cached business transaction listing of an application, loading it on first use.
+	 * Callers must not modify it.
+	 */
+	ArrayList<ADBusinessTransaction> getCachedBTsFromApp(String app) throws JSONException
+	{
+		return getCachedBTsFromApp(app, null);
+	}
 
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			addBT(parsedJSON.getJSONObject(jArrayPos));		
-		}
-		
-		return BTs;
+	/**
+	 * Gets the cached business transaction listing of an application, counting in stores whether it had
+	 * to be loaded
+	 */
+	private ArrayList<ADBusinessTransaction> getCachedBTsFromApp(final String app, AtomicInteger stores) throws JSONException
+	{
+		return topologyCache.get(TopologyCache.BUSINESS_TRANSACTIONS, app,
+				new TopologyCache.Loader<ArrayList<ADBusinessTransaction>>()
+				{
+					public ArrayList<ADBusinessTransaction> load() throws JSONException
+					{
+						return fetchBTsFromApp(app);
+					}
+				}, stores);
 	}
 
 	/**
@@ -241,19 +468,7 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADBusinessTransaction> getBTsFromTier(String tierName) throws JSONException
 	{
-		getBTs();
-
-		ArrayList<ADBusinessTransaction> filteredBTs = new ArrayList<ADBusinessTransaction>();
-
-		for (ADBusinessTransaction bt : BTs)
-		{
-			if (bt.tierName.equals(tierName))
-			{
-				filteredBTs.add(bt);
-			}
-		}
-
-		return filteredBTs;
+		return BTs = new ArrayList<ADBusinessTransaction>(getBTIndex().getGroup(tierName));
 	}
 
 	/**
@@ -265,17 +480,7 @@ public class RESTToolkit
 	 */
 	public ADBusinessTransaction getBTbyId(String BTId) throws JSONException
 	{
-		getBTs();
-
-		for (ADBusinessTransaction BT : BTs)
-		{
-			if (BT.id.equals(BTId))
-			{
-				return BT;
-			}
-		}
-
-		return null;
+		return getBTIndex().getById(BTId);
 	}
 
 	/**
@@ -286,18 +491,7 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADTier> getTiers() throws JSONException
 	{
-		getApplications();
-
-		ArrayList<ADTier> tmpTier = new ArrayList<ADTier>();
-
-		for (ADApplication curApp : applications)
-		{
-			tmpTier.addAll(getTiersFromApp(curApp.name));
-		}
-
-		tiers = tmpTier;
-
-		return tiers;
+		return tiers = new ArrayList<ADTier>(getTierIndex().getAll());
 	}
 
 	/**
@@ -309,20 +503,29 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADTier> getTiersFromApp(String app) throws JSONException
 	{
-		tiers = new ArrayList<ADTier>();
-
-		rawJSON = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/tiers", "output=JSON&" + params, username, password);
+		return tiers = new ArrayList<ADTier>(getCachedTiersFromApp(app));
+	}
 
-		JSONArray parsedJSON = new JSONArray(rawJSON);
+	/**
+	 * Gets the cached tier listing of an application, loading it on first use. Callers must not modify it.
+	 */
+	ArrayList<ADTier> getCachedTiersFromApp(String app) throws JSONException
+	{
+		return getCachedTiersFromApp(app, null);
+	}
 
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
+	/**
+	 * Gets the cached tier listing of an application, counting in stores whether it had to be loaded
+	 */
+	private ArrayList<ADTier> getCachedTiersFromApp(final String app, AtomicInteger stores) throws JSONException
+	{
+		return topologyCache.get(TopologyCache.TIERS, app, new TopologyCache.Loader<ArrayList<ADTier>>()
 		{
-			addTier(parsedJSON.getJSONObject(jArrayPos));
-		}
-		
-		return tiers;
+			public ArrayList<ADTier> load() throws JSONException
+			{
+				return fetchTiersFromApp(app);
+			}
+		}, stores);
 	}
 
 	/**
@@ -334,17 +537,7 @@ public class RESTToolkit
 	 */
 	public ADTier getTierById(String tierId) throws JSONException
 	{
-		getTiers();
-		
-		for (ADTier tier : tiers)
-		{
-			if (tier.id.equals(tierId))
-			{
-				return tier;
-			}
-		}
-		
-		return null;
+		return getTierIndex().getById(tierId);
 	}
 
 	/**
@@ -355,18 +548,7 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADNode> getNodes() throws JSONException
 	{
-		getApplications();
-
-		ArrayList<ADNode> tmpNodes = new ArrayList<ADNode>();
-
-		for (ADApplication curApp : applications)
-		{
-			tmpNodes.addAll(getNodesFromApp(curApp.name));
-		}
-		
-		nodes = tmpNodes;
-		
-		return nodes;
+		return nodes = new ArrayList<ADNode>(getNodeIndex().getAll());
 	}
 
 	/**
@@ -378,19 +560,29 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADNode> getNodesFromApp(String app) throws JSONException
 	{
-		nodes = new ArrayList<ADNode>();
-		rawJSON = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/nodes", "output=JSON&" + params, username, password);
+		return nodes = new ArrayList<ADNode>(getCachedNodesFromApp(app));
+	}
 
-		JSONArray parsedJSON = new JSONArray(rawJSON);
+	/**
+	 * Gets the cached node listing of an application, loading it on first use. Callers must not modify it.
+	 */
+	ArrayList<ADNode> getCachedNodesFromApp(String app) throws JSONException
+	{
+		return getCachedNodesFromApp(app, null);
+	}
 
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
+	/**
+	 * Gets the cached node listing of an application, counting in stores whether it had to be loaded
+	 */
+	private ArrayList<ADNode> getCachedNodesFromApp(final String app, AtomicInteger stores) throws JSONException
+	{
+		return topologyCache.get(TopologyCache.NODES, app, new TopologyCache.Loader<ArrayList<ADNode>>()
 		{
-			addNode(parsedJSON.getJSONObject(jArrayPos));
-		}
-		
-		return nodes;
+			public ArrayList<ADNode> load() throws JSONException
+			{
+				return fetchNodesFromApp(app);
+			}
+		}, stores);
 	}
 
 	/**
@@ -402,19 +594,7 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADNode> getNodesFromTier(String tierName) throws JSONException
 	{
-		getNodes();
-
-		ArrayList<ADNode> filteredNodes = new ArrayList<ADNode>();
-
-		for (ADNode node : nodes)
-		{
-			if (node.tierName.equals(tierName))
-			{
-				filteredNodes.add(node);
-			}
-		}
-
-		return filteredNodes;
+		return nodes = new ArrayList<ADNode>(getNodeIndex().getGroup(tierName));
 	}
 
 	/**
@@ -426,17 +606,7 @@ public class RESTToolkit
 	 */
 	public ADNode getNodeByName(String nodeName) throws JSONException
 	{
-		getNodes();
-
-		for (ADNode node : nodes)
-		{
-			if (node.name.equals(nodeName))
-			{
-				return node;
-			}
-		}
-		
-		return null;
+		return getNodeIndex().getByName(nodeName);
 	}
 
 	/**
@@ -447,17 +617,7 @@ public class RESTToolkit
 	 */
 	public ADNode getNodeById(String nodeId) throws JSONException
 	{
-		getNodes();
-
-		for (ADNode node : nodes)
-		{
-			if (node.id.equals(nodeId))
-			{
-				return node;
-			}
-		}
-		
-		return null;
+		return getNodeIndex().getById(nodeId);
 	}
 
 	/**
@@ -486,44 +646,11 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getARTForBT (String app, String BT, long startTime, long endTime, boolean rollup) 
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		getBTs();
-
-		String tierName = "";
-
-		for (ADBusinessTransaction bt : BTs)
-		{
-			if (bt.name.equals(BT))
-			{
-				tierName = bt.tierName;
-			}
-		}
-		
-		String metricPath = "Business Transaction Performance|Business Transactions|"
-				+ tierName + "|" + BT + "|Normal Average Response Time (ms)";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BETWEEN_TIMES&start-time="+ startTime + "&end-time=" + endTime
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
+		String tierName = topology.getTierNameForBT(app, BT);
 
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+		String metricPath = MetricPaths.btMetric(tierName, BT, MetricPaths.NORMAL_AVERAGE_RESPONSE_TIME);
 
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -540,44 +667,11 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getARTForBT(String app, String BT, int duration, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		getBTs();
-
-		String tierName = "";
-
-		for (ADBusinessTransaction bt : BTs)
-		{
-			if (bt.name.equals(BT))
-			{
-				tierName = bt.tierName;
-			}
-		}
-
-		String metricPath = "Business Transaction Performance|Business Transactions|"
-				+ tierName + "|" + BT + "|Normal Average Response Time (ms)";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BEFORE_NOW&duration-in-mins="+ duration + "&rollup="
-				+ rollup, username, password);
+		String tierName = topology.getTierNameForBT(app, BT);
 
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+		String metricPath = MetricPaths.btMetric(tierName, BT, MetricPaths.NORMAL_AVERAGE_RESPONSE_TIME);
 
-		return metrics;
+		return getMetrics(MetricQuery.beforeNow(app, metricPath, duration, rollup));
 	}
 
 	/**
@@ -605,44 +699,11 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getLoadForBT(String app, String BT, long startTime, long endTime, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		getBTs();
-
-		String tierName = "";
-
-		for (ADBusinessTransaction bt : BTs)
-		{
-			if (bt.name.equals(BT))
-			{
-				tierName = bt.tierName;
-			}
-		}
-
-		String metricPath = "Business Transaction Performance|Business Transactions|" + tierName + "|" + BT
-				+ "|Calls per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/"
-				+ app.trim().replaceAll(" ", "%20") + "/metric-data", "output=JSON&metric-path="
-				+ metricPath.trim().replaceAll(" ", "%20") + "&time-range-type=BETWEEN_TIMES&start-time="
-				+ startTime + "&end-time=" + endTime + "&rollup=" + rollup, username, password);
+		String tierName = topology.getTierNameForBT(app, BT);
 
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+		String metricPath = MetricPaths.btMetric(tierName, BT, MetricPaths.CALLS_PER_MINUTE);
 
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -660,45 +721,12 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getLoadForBT(String appName, String BT, int duration, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
+		String tierName = topology.getTierNameForBT(appName, BT);
 
-		getBTs();
+		String metricPath = MetricPaths.btMetric(tierName, BT, MetricPaths.CALLS_PER_MINUTE);
 
-		String tierName = "";
-
-		for (ADBusinessTransaction bt : BTs)
-		{
-			if (bt.name.equals(BT))
-			{
-				tierName = bt.tierName;
-			}
-		}
-
-		String metricPath = "Business Transaction Performance|Business Transactions|" + tierName + "|" + BT
-				+ "|Calls per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/"
-				+ appName.trim().replaceAll(" ", "%20") + "/metric-data", "output=JSON&metric-path="
-				+ metricPath.trim().replaceAll(" ", "%20") + "&time-range-type=BEFORE_NOW&duration-in-mins="
-				+ duration + "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
-	}
+		return getMetrics(MetricQuery.beforeNow(appName, metricPath, duration, rollup));
+	}
 
 	/**
 	 * Gets the error metrics for a business transaction from a specific time range.
@@ -725,44 +753,11 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getErrorsForBT(String app, String BT, long startTime, long endTime, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		getBTs();
-
-		String tierName = "";
-
-		for (ADBusinessTransaction bt : BTs)
-		{
-			if (bt.name.equals(BT))
-			{
-				tierName = bt.tierName;
-			}
-		}
-
-		String metricPath = "Business Transaction Performance|Business Transactions|"
-				+ tierName +"|" + BT + "|Errors per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BETWEEN_TIMES&start-time="+ startTime + "&end-time=" + endTime 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
+		String tierName = topology.getTierNameForBT(app, BT);
 
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+		String metricPath = MetricPaths.btMetric(tierName, BT, MetricPaths.ERRORS_PER_MINUTE);
 
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -779,44 +774,11 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getErrorsForBT(String app, String BT, int duration, boolean rollup) 
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
+		String tierName = topology.getTierNameForBT(app, BT);
 
-		getBTs();
+		String metricPath = MetricPaths.btMetric(tierName, BT, MetricPaths.ERRORS_PER_MINUTE);
 
-		String tierName = "";
-
-		for (ADBusinessTransaction bt : BTs)
-		{
-			if (bt.name.equals(BT))
-			{
-				tierName = bt.tierName;
-			}
-		}
-
-		String metricPath = "Business Transaction Performance|Business Transactions|"
-				+ tierName +"|" + BT + "|Errors per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BEFORE_NOW&duration-in-mins="+ duration 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
+		return getMetrics(MetricQuery.beforeNow(app, metricPath, duration, rollup));
 	}
 
 	/**
@@ -843,32 +805,10 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADMetric> getARTForApp(String app, long startTime, long endTime, boolean rollup)
 			throws JSONException
-	{	
-		metrics = new ArrayList<ADMetric>();
-
-		String metricPath = "Overall Application Performance|Average Response Time (ms)";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BETWEEN_TIMES&start-time="+ startTime + "&end-time=" + endTime 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+	{
+		String metricPath = MetricPaths.appMetric(MetricPaths.AVERAGE_RESPONSE_TIME);
 
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -882,32 +822,10 @@ public class RESTToolkit
 	 * @throws 				JSONException
 	 */
 	public ArrayList<ADMetric> getARTForApp(String app, int duration, boolean rollup) throws JSONException
-	{	
-		metrics = new ArrayList<ADMetric>();
-
-		String metricPath = "Overall Application Performance|Average Response Time (ms)";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BEFORE_NOW&duration-in-mins="+ duration 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+	{
+		String metricPath = MetricPaths.appMetric(MetricPaths.AVERAGE_RESPONSE_TIME);
 
-		return metrics;
+		return getMetrics(MetricQuery.beforeNow(app, metricPath, duration, rollup));
 	}
 
 	/**
@@ -935,31 +853,9 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getLoadForApp(String app, long startTime, long endTime, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		String metricPath = "Overall Application Performance|Calls per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BETWEEN_TIMES&start-time="+ startTime + "&end-time=" + endTime 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+		String metricPath = MetricPaths.appMetric(MetricPaths.CALLS_PER_MINUTE);
 
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -975,31 +871,9 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getLoadForApp(String app, int duration, boolean rollup) 
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		String metricPath = "Overall Application Performance|Calls per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BEFORE_NOW&duration-in-mins="+ duration 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
+		String metricPath = MetricPaths.appMetric(MetricPaths.CALLS_PER_MINUTE);
 
-		return metrics;
+		return getMetrics(MetricQuery.beforeNow(app, metricPath, duration, rollup));
 	}
 
 	/**
@@ -1027,31 +901,9 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getErrorsForApp(String app, long startTime, long endTime, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
+		String metricPath = MetricPaths.appMetric(MetricPaths.ERRORS_PER_MINUTE);
 
-		String metricPath = "Overall Application Performance|Errors per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&output=JSON&time-range-type=BETWEEN_TIMES&start-time="+ startTime 
-				+ "&end-time=" + endTime + "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -1066,31 +918,9 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getErrorsForApp(String app, int duration, boolean rollup) 
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		String metricPath = "Overall Application Performance|Errors per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&output=JSON&time-range-type=BEFORE_NOW&duration-in-mins="+ duration 
-				+ "&rollup=" + rollup, username, password);
+		String metricPath = MetricPaths.appMetric(MetricPaths.ERRORS_PER_MINUTE);
 
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
+		return getMetrics(MetricQuery.beforeNow(app, metricPath, duration, rollup));
 	}
 
 	/**
@@ -1119,31 +949,9 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getARTForTier(String app, String tierName, long startTime, long endTime, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
+		String metricPath = MetricPaths.tierMetric(tierName, MetricPaths.AVERAGE_RESPONSE_TIME);
 
-		String metricPath = "Overall Application Performance|" + tierName + "|Average Response Time (ms)";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BETWEEN_TIMES&start-time="+ startTime + "&end-time=" + endTime 
-				+ "&rollup=" + rollup, username, password);
-	
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -1160,31 +968,9 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getARTForTier(String appName, String tierName, int duration, boolean rollup) 
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		String metricPath = "Overall Application Performance|" + tierName + "|Average Response Time (ms)";
+		String metricPath = MetricPaths.tierMetric(tierName, MetricPaths.AVERAGE_RESPONSE_TIME);
 
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + appName.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BEFORE_NOW&duration-in-mins="+ duration 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-		
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
+		return getMetrics(MetricQuery.beforeNow(appName, metricPath, duration, rollup));
 	}
 
 	/**
@@ -1213,31 +999,9 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getLoadForTier(String app, String tierName, long startTime, long endTime, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
+		String metricPath = MetricPaths.tierMetric(tierName, MetricPaths.CALLS_PER_MINUTE);
 
-		String metricPath = "Overall Application Performance|" + tierName + "|Calls per Minute";
-		
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BETWEEN_TIMES&start-time="+ startTime + "&end-time=" + endTime
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-		
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-		
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -1253,31 +1017,9 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADMetric> getLoadForTier(String app, String tierName, int duration, boolean rollup) throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
+		String metricPath = MetricPaths.tierMetric(tierName, MetricPaths.CALLS_PER_MINUTE);
 
-		String metricPath = "Overall Application Performance|" + tierName + "|Calls per Minute";
-
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BEFORE_NOW&duration-in-mins="+ duration 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
+		return getMetrics(MetricQuery.beforeNow(app, metricPath, duration, rollup));
 	}
 
 	/**
@@ -1305,31 +1047,9 @@ public class RESTToolkit
 	 */
 	public ArrayList<ADMetric> getErrorsForTier(String app, String tierName, long startTime, long endTime, boolean rollup) throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
-
-		String metricPath = "Overall Application Performance|" + tierName + "|Errors per Minute";
+		String metricPath = MetricPaths.tierMetric(tierName, MetricPaths.ERRORS_PER_MINUTE);
 
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + app.trim().replace(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BETWEEN_TIMES&start-time="+ startTime + "&end-time=" + endTime 
-				+ "&rollup=" + rollup, username, password);
-
-		JSONArray parsedJSON = new JSONArray(result);
-
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
-		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
-			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
-				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
-				}
-			}
-		}
-
-		return metrics;
+		return getMetrics(MetricQuery.betweenTimes(app, metricPath, startTime, endTime, rollup));
 	}
 
 	/**
@@ -1346,114 +1066,709 @@ public class RESTToolkit
 	public ArrayList<ADMetric> getErrorsForTier(String appName, String tierName, int duration, boolean rollup)
 			throws JSONException
 	{
-		metrics = new ArrayList<ADMetric>();
+		String metricPath = MetricPaths.tierMetric(tierName, MetricPaths.ERRORS_PER_MINUTE);
+
+		return getMetrics(MetricQuery.beforeNow(appName, metricPath, duration, rollup));
+	}
 
-		String metricPath = "Overall Application Performance|" + tierName + "|Errors per Minute";
+	/**
+	 * Gets the values of the metrics matching a metric path, which may contain wildcards.
+	 * One request returns every matching metric, e.g. the average response time of all business
+	 * transactions of a tier with the path
+	 * MetricPaths.btMetric(tierName, MetricPaths.WILDCARD, MetricPaths.NORMAL_AVERAGE_RESPONSE_TIME)
+	 * @param 	query		Application, metric path and time range to query
+	 * @return				Map{@literal <}String, ArrayList{@literal <}ADMetric{@literal >}{@literal >}
+	 * 							- Values of each matching metric keyed by its full metric path,
+	 * 							  in the order returned by the controller
+	 * @throws 				JSONException
+	 */
+	public Map<String, ArrayList<ADMetric>> getMetricData(MetricQuery query) throws JSONException
+	{
+		Map<String, ArrayList<ADMetric>> metricData = new LinkedHashMap<String, ArrayList<ADMetric>>();
 
-		String result = HTTPRequestPoster.sendGetRequestWithAuthorization(controllerURL
-				+ "/controller/rest/applications/" + appName.trim().replace(" ", "%20")
-				+ "/metric-data", "output=JSON&metric-path=" + metricPath.trim().replaceAll(" ", "%20")
-				+ "&time-range-type=BEFORE_NOW&duration-in-mins="+ duration + "&rollup=" + rollup, username, password);
+		JSONPullParser parser = openJSON(controllerURL
+				+ "/controller/rest/applications/" + query.getApp().trim().replaceAll(" ", "%20")
+				+ "/metric-data", "output=JSON&metric-path=" + query.getMetricPath().trim().replaceAll(" ", "%20")
+				+ "&" + query.getTimeRangeParameters());
+		try
+		{
+			// metric values are bound one at a time as they arrive
+			TypeBinders.readMetricData(parser, query.getMetricPath(), metricData);
+		}
+		finally
+		{
+			parser.close();
+		}
 
-		JSONArray parsedJSON = new JSONArray(result);
+		return metricData;
+	}
 
-		for (int jArrayPos = 0; jArrayPos < parsedJSON.length(); jArrayPos++)
+	/**
+	 * Gets the values of many metric queries with as few requests to the controller as possible.
+	 * Queries of the same application and time range that ask for the same metric of different
+	 * business transactions, tiers or other entities are combined into one wildcard request, and
+	 * the values returned are split back out per query. Polling ART, load and errors of every
+	 * business transaction of an application takes three requests instead of three per business transaction.
+	 * @param 	queries		Queries to run, typically with paths built by MetricPaths or getBTMetricPath
+	 * @return				Map{@literal <}MetricQuery, ArrayList{@literal <}ADMetric{@literal >}{@literal >}
+	 * 							- Values of each query, in the order of the queries. The values of a query
+	 * 							  with wildcards are those of all its matching metrics, one after the other.
+	 * @throws 				JSONException
+	 */
+	public Map<MetricQuery, ArrayList<ADMetric>> getMetricData(List<MetricQuery> queries) throws JSONException
+	{
+		Map<MetricQuery, ArrayList<ADMetric>> metricData = new LinkedHashMap<MetricQuery, ArrayList<ADMetric>>();
+		for (MetricQuery query : queries)
+		{
+			metricData.put(query, new ArrayList<ADMetric>());
+		}
+
+		MetricBatch batch = new MetricBatch(queries);
+		List<MetricQuery> requests = batch.getRequests();
+		List<List<MetricQuery>> answered = batch.getQueries();
+
+		for (int i = 0; i < requests.size(); i++)
 		{
-			if (parsedJSON.getJSONObject(jArrayPos).has("metricValues"))
+			for (Map.Entry<String, ArrayList<ADMetric>> values : getMetricData(requests.get(i)).entrySet())
 			{
-				JSONArray metricArray = parsedJSON.getJSONObject(jArrayPos).getJSONArray("metricValues");
-				for (int jMetricPos = 0; jMetricPos < metricArray.length(); jMetricPos++)
+				for (MetricQuery query : answered.get(i))
 				{
-					addMetric(metricArray.getJSONObject(jMetricPos));
+					if (MetricBatch.matches(query, values.getKey()))
+					{
+						metricData.get(query).addAll(values.getValue());
+					}
 				}
 			}
 		}
 
-		return metrics;
+		return metricData;
+	}
+
+	/**
+	 * Gets the metric path of a business transaction metric, looking up the tier of the business transaction
+	 * @param 	app			Application Name or Application ID
+	 * @param 	BT			Business Transaction Name
+	 * @param 	metric		Metric name, e.g. MetricPaths.NORMAL_AVERAGE_RESPONSE_TIME
+	 * @return				Metric path to use in a MetricQuery
+	 * @throws 				JSONException
+	 */
+	public String getBTMetricPath(String app, String BT, String metric) throws JSONException
+	{
+		return MetricPaths.btMetric(topology.getTierNameForBT(app, BT), BT, metric);
+	}
+
+	/**
+	 * Gets the values of all metrics matching a query as one list
+	 */
+	private ArrayList<ADMetric> getMetrics(MetricQuery query) throws JSONException
+	{
+		ArrayList<ADMetric> all = new ArrayList<ADMetric>();
+
+		for (ArrayList<ADMetric> values : getMetricData(query).values())
+		{
+			all.addAll(values);
+		}
+
+		return metrics = all;
+	}
+
+	/**
+	 * Sends a GET request and opens a pull parser on the response body, which is parsed while it is received
+	 */
+	private JSONPullParser openJSON(String endpoint, String requestParameters) throws JSONException
+	{
+		try
+		{
+			return new JSONPullParser(transport.openGetRequest(endpoint, requestParameters));
+		}
+		catch (IOException e)
+		{
+			throw new JSONException(e);
+		}
+	}
+
+	/**
+	 * Asynchronous version of {@link #getApplications()}
+	 */
+	public CompletableFuture<ArrayList<ADApplication>> getApplicationsAsync()
+	{
+		return async(() -> getApplications());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getEvents(String, long, long, String, String)}
+	 */
+	public CompletableFuture<ArrayList<ADEvent>> getEventsAsync(final String app,
+			final long startTime, final long endTime, final String types, final String severities)
+	{
+		return async(() -> getEvents(app, startTime, endTime, types, severities));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getEvents(String, int, String, String)}
+	 */
+	public CompletableFuture<ArrayList<ADEvent>> getEventsAsync(final String app, final int time,
+			final String types, final String severities)
+	{
+		return async(() -> getEvents(app, time, types, severities));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getBTs()}
+	 */
+	public CompletableFuture<ArrayList<ADBusinessTransaction>> getBTsAsync()
+	{
+		return async(() -> getBTs());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getBTsFromApp(String)}
+	 */
+	public CompletableFuture<ArrayList<ADBusinessTransaction>> getBTsFromAppAsync(final String app)
+	{
+		return async(() -> getBTsFromApp(app));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getBTsFromTier(String)}
+	 */
+	public CompletableFuture<ArrayList<ADBusinessTransaction>> getBTsFromTierAsync(final String tierName)
+	{
+		return async(() -> getBTsFromTier(tierName));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getBTbyId(String)}
+	 */
+	public CompletableFuture<ADBusinessTransaction> getBTbyIdAsync(final String BTId)
+	{
+		return async(() -> getBTbyId(BTId));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getTiers()}
+	 */
+	public CompletableFuture<ArrayList<ADTier>> getTiersAsync()
+	{
+		return async(() -> getTiers());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getTiersFromApp(String)}
+	 */
+	public CompletableFuture<ArrayList<ADTier>> getTiersFromAppAsync(final String app)
+	{
+		return async(() -> getTiersFromApp(app));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getTierById(String)}
+	 */
+	public CompletableFuture<ADTier> getTierByIdAsync(final String tierId)
+	{
+		return async(() -> getTierById(tierId));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getNodes()}
+	 */
+	public CompletableFuture<ArrayList<ADNode>> getNodesAsync()
+	{
+		return async(() -> getNodes());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getNodesFromApp(String)}
+	 */
+	public CompletableFuture<ArrayList<ADNode>> getNodesFromAppAsync(final String app)
+	{
+		return async(() -> getNodesFromApp(app));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getNodesFromTier(String)}
+	 */
+	public CompletableFuture<ArrayList<ADNode>> getNodesFromTierAsync(final String tierName)
+	{
+		return async(() -> getNodesFromTier(tierName));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getNodeByName(String)}
+	 */
+	public CompletableFuture<ADNode> getNodeByNameAsync(final String nodeName)
+	{
+		return async(() -> getNodeByName(nodeName));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getNodeById(String)}
+	 */
+	public CompletableFuture<ADNode> getNodeByIdAsync(final String nodeId)
+	{
+		return async(() -> getNodeById(nodeId));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getARTForBT(String, String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getARTForBTAsync(final String app, final String BT,
+			final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getARTForBT(app, BT, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getARTForBT(String, String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getARTForBTAsync(final String app, final String BT,
+			final int duration, final boolean rollup)
+	{
+		return async(() -> getARTForBT(app, BT, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getLoadForBT(String, String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getLoadForBTAsync(final String app, final String BT,
+			final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getLoadForBT(app, BT, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getLoadForBT(String, String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getLoadForBTAsync(final String appName,
+			final String BT, final int duration, final boolean rollup)
+	{
+		return async(() -> getLoadForBT(appName, BT, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getErrorsForBT(String, String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getErrorsForBTAsync(final String app,
+			final String BT, final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getErrorsForBT(app, BT, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getErrorsForBT(String, String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getErrorsForBTAsync(final String app,
+			final String BT, final int duration, final boolean rollup)
+	{
+		return async(() -> getErrorsForBT(app, BT, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getARTForApp(String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getARTForAppAsync(final String app,
+			final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getARTForApp(app, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getARTForApp(String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getARTForAppAsync(final String app,
+			final int duration, final boolean rollup)
+	{
+		return async(() -> getARTForApp(app, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getLoadForApp(String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getLoadForAppAsync(final String app,
+			final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getLoadForApp(app, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getLoadForApp(String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getLoadForAppAsync(final String app,
+			final int duration, final boolean rollup)
+	{
+		return async(() -> getLoadForApp(app, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getErrorsForApp(String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getErrorsForAppAsync(final String app,
+			final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getErrorsForApp(app, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getErrorsForApp(String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getErrorsForAppAsync(final String app,
+			final int duration, final boolean rollup)
+	{
+		return async(() -> getErrorsForApp(app, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getARTForTier(String, String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getARTForTierAsync(final String app,
+			final String tierName, final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getARTForTier(app, tierName, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getARTForTier(String, String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getARTForTierAsync(final String appName,
+			final String tierName, final int duration, final boolean rollup)
+	{
+		return async(() -> getARTForTier(appName, tierName, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getLoadForTier(String, String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getLoadForTierAsync(final String app,
+			final String tierName, final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getLoadForTier(app, tierName, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getLoadForTier(String, String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getLoadForTierAsync(final String app,
+			final String tierName, final int duration, final boolean rollup)
+	{
+		return async(() -> getLoadForTier(app, tierName, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getErrorsForTier(String, String, long, long, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getErrorsForTierAsync(final String app,
+			final String tierName, final long startTime, final long endTime, final boolean rollup)
+	{
+		return async(() -> getErrorsForTier(app, tierName, startTime, endTime, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getErrorsForTier(String, String, int, boolean)}
+	 */
+	public CompletableFuture<ArrayList<ADMetric>> getErrorsForTierAsync(final String appName,
+			final String tierName, final int duration, final boolean rollup)
+	{
+		return async(() -> getErrorsForTier(appName, tierName, duration, rollup));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getMetricData(MetricQuery)}
+	 */
+	public CompletableFuture<Map<String, ArrayList<ADMetric>>> getMetricDataAsync(final MetricQuery query)
+	{
+		return async(() -> getMetricData(query));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getMetricData(List)}
+	 */
+	public CompletableFuture<Map<MetricQuery, ArrayList<ADMetric>>> getMetricDataAsync(final List<MetricQuery> queries)
+	{
+		return async(() -> getMetricData(queries));
+	}
+
+	/**
+	 * Runs a query on the async executor. The query blocks the executor thread it runs on until its
+	 * requests have been answered.
+	 * @return		Future completed with the result of the query, or exceptionally with the exception it threw
+	 */
+	private <T> CompletableFuture<T> async(Query<T> query)
+	{
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		try
+		{
+			asyncExecutor.execute(() ->
+			{
+				try
+				{
+					future.complete(query.run());
+				}
+				catch (Throwable e)
+				{
+					future.completeExceptionally(e);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * A blocking toolkit query
+	 */
+	private interface Query<T>
+	{
+		T run() throws JSONException;
+	}
+
+	/**
+	 * Gets the business transactions of all applications indexed by id, name and tier name
+	 */
+	private TopologyIndex<ADBusinessTransaction> getBTIndex() throws JSONException
+	{
+		TopologyIndex<ADBusinessTransaction> index = btIndex;
+		if (index == null || !index.isCurrent(topologyCache.getVersion()))
+		{
+			long version = topologyCache.getVersion();
+			final AtomicInteger stores = new AtomicInteger();
+			TopologyCrawler.Crawl<ArrayList<ADBusinessTransaction>> crawl = crawler.crawl(TopologyCache.BUSINESS_TRANSACTIONS,
+					getApplicationNames(stores), new TopologyCrawler.AppLoader<ArrayList<ADBusinessTransaction>>()
+					{
+						public ArrayList<ADBusinessTransaction> load(String app) throws JSONException
+						{
+							return getCachedBTsFromApp(app, stores);
+						}
+					});
+
+			index = new TopologyIndex<ADBusinessTransaction>(crawl.listings, BT_KEYS, crawledVersion(version, stores),
+					expiresAt(crawl));
+			btIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the tiers of all applications indexed by id and name
+	 */
+	private TopologyIndex<ADTier> getTierIndex() throws JSONException
+	{
+		TopologyIndex<ADTier> index = tierIndex;
+		if (index == null || !index.isCurrent(topologyCache.getVersion()))
+		{
+			long version = topologyCache.getVersion();
+			final AtomicInteger stores = new AtomicInteger();
+			TopologyCrawler.Crawl<ArrayList<ADTier>> crawl = crawler.crawl(TopologyCache.TIERS,
+					getApplicationNames(stores), new TopologyCrawler.AppLoader<ArrayList<ADTier>>()
+					{
+						public ArrayList<ADTier> load(String app) throws JSONException
+						{
+							return getCachedTiersFromApp(app, stores);
+						}
+					});
+
+			index = new TopologyIndex<ADTier>(crawl.listings, TIER_KEYS, crawledVersion(version, stores),
+					expiresAt(crawl));
+			tierIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the nodes of all applications indexed by id, name and tier name
+	 */
+	private TopologyIndex<ADNode> getNodeIndex() throws JSONException
+	{
+		TopologyIndex<ADNode> index = nodeIndex;
+		if (index == null || !index.isCurrent(topologyCache.getVersion()))
+		{
+			long version = topologyCache.getVersion();
+			final AtomicInteger stores = new AtomicInteger();
+			TopologyCrawler.Crawl<ArrayList<ADNode>> crawl = crawler.crawl(TopologyCache.NODES,
+					getApplicationNames(stores), new TopologyCrawler.AppLoader<ArrayList<ADNode>>()
+					{
+						public ArrayList<ADNode> load(String app) throws JSONException
+						{
+							return getCachedNodesFromApp(app, stores);
+						}
+					});
+
+			index = new TopologyIndex<ADNode>(crawl.listings, NODE_KEYS, crawledVersion(version, stores),
+					expiresAt(crawl));
+			nodeIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the names of all applications, in listing order
+	 */
+	private ArrayList<String> getApplicationNames(AtomicInteger stores) throws JSONException
+	{
+		ArrayList<ADApplication> apps = getCachedApplications(stores);
+		ArrayList<String> names = new ArrayList<String>(apps.size());
+		for (ADApplication curApp : apps)
+		{
+			names.add(curApp.name);
+		}
+		return names;
+	}
+
+	/**
+	 * Gets the version of the topology cache an index built from a crawl is current at. Listings the crawl
+	 * had to load move the version themselves; if nothing else moved it, the index reflects the cache as
+	 * it is after the crawl. Otherwise a listing may have changed under the crawl, and the index is
+	 * stamped with the version it started from so that the next lookup builds it again.
+	 * @param 	before		Version read before the crawl
+	 * @param 	stores		Number of listings the crawl loaded and stored
+	 */
+	private long crawledVersion(long before, AtomicInteger stores)
+	{
+		long after = topologyCache.getVersion();
+		return after - before == stores.get() ? after : before;
+	}
+
+	/**
+	 * Gets the time until which an index built from a crawl may be served. An index missing
+	 * failed applications is only served once, so that the next lookup asks for them again.
+	 */
+	private long expiresAt(TopologyCrawler.Crawl<?> crawl)
+	{
+		long now = System.currentTimeMillis();
+		return crawl.failures == 0 ? now + topologyCache.getShortestTTL() : now;
+	}
+
+	/**
+	 * Fetches all applications from the controller
+	 */
+	private ArrayList<ADApplication> fetchApplications() throws JSONException
+	{
+		JSONPullParser parser = openJSON(controllerURL +
+				"/controller/rest/applications", "output=JSON&" + params);
+		try
+		{
+			return TypeBinders.readList(parser, TypeBinders.APPLICATION);
+		}
+		finally
+		{
+			parser.close();
+		}
+	}
+
+	/**
+	 * Fetches the business transactions of an application from the controller
+	 */
+	private ArrayList<ADBusinessTransaction> fetchBTsFromApp(String app) throws JSONException
+	{
+		JSONPullParser parser = openJSON(controllerURL
+				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
+				+ "/business-transactions", "output=JSON&" + params);
+		try
+		{
+			return TypeBinders.readList(parser, TypeBinders.BUSINESS_TRANSACTION);
+		}
+		finally
+		{
+			parser.close();
+		}
+	}
+
+	/**
+	 * Fetches the tiers of an application from the controller
+	 */
+	private ArrayList<ADTier> fetchTiersFromApp(String app) throws JSONException
+	{
+		JSONPullParser parser = openJSON(controllerURL
+				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
+				+ "/tiers", "output=JSON&" + params);
+		try
+		{
+			return TypeBinders.readList(parser, TypeBinders.TIER);
+		}
+		finally
+		{
+			parser.close();
+		}
 	}
 
 	/**
-	 * Adds a single application instance into the application array
+	 * Fetches the nodes of an application from the controller
+	 */
+	private ArrayList<ADNode> fetchNodesFromApp(String app) throws JSONException
+	{
+		JSONPullParser parser = openJSON(controllerURL
+				+ "/controller/rest/applications/" + app.trim().replaceAll(" ", "%20")
+				+ "/nodes", "output=JSON&" + params);
+		try
+		{
+			return TypeBinders.readList(parser, TypeBinders.NODE);
+		}
+		finally
+		{
+			parser.close();
+		}
+	}
+
+	/**
+	 * Adds a single application instance into the list the last application query returned
 	 * @param 	applicationJSON 	JSON object captured from the REST request
-	 * @throws 	JSONException
+	 * @throws 					JSONException
+	 * @deprecated	Responses are no longer parsed into JSONObjects, so nothing calls this. The list
+	 * 				is shared with the caller of the last query and is not safe to use while queries
+	 * 				run on other threads: add to the list a query returned instead.
 	 */
+	@Deprecated
 	public void addApplication(JSONObject applicationJSON) throws JSONException
 	{
-		ADApplication application = new ADApplication();
-		application.id = (applicationJSON.get("id")).toString();
-		application.description = (applicationJSON.get("description")).toString();
-		application.name = (applicationJSON.get("name")).toString();
-
-		applications.add(application);
+		lastList(applications).add(TypeBinders.bind(applicationJSON, TypeBinders.APPLICATION));
 	}
 
 	/**
-	 * Adds a single business transaction instance into the business transaction array
+	 * Adds a single business transaction instance into the list the last business transaction
+	 * query returned
 	 * @param 	btJSON 	JSON object captured from the REST request
 	 * @throws 			JSONException
+	 * @deprecated	See {@link #addApplication(JSONObject)}
 	 */
+	@Deprecated
 	public void addBT(JSONObject btJSON) throws JSONException
 	{
-		ADBusinessTransaction BT= new ADBusinessTransaction();
-		BT.id = (btJSON.get("id")).toString();
-		BT.background = (btJSON.get("background")).toString();
-		BT.entryPointType = (btJSON.get("entryPointType")).toString();
-		BT.internalName = (btJSON.get("internalName")).toString();
-		BT.name = (btJSON.get("name")).toString();
-		BT.tierId = (btJSON.get("tierId")).toString();
-		BT.tierName = (btJSON.get("tierName")).toString();
-
-		BTs.add(BT);
+		lastList(BTs).add(TypeBinders.bind(btJSON, TypeBinders.BUSINESS_TRANSACTION));
 	}
 
 	/**
-	 * Adds a single node instance into the node array
+	 * Adds a single node instance into the list the last node query returned
 	 * @param 	nodeJSON 	JSON object captured from the REST request
 	 * @throws 				JSONException
+	 * @deprecated	See {@link #addApplication(JSONObject)}
 	 */
+	@Deprecated
 	public void addNode(JSONObject nodeJSON) throws JSONException
 	{
-		ADNode node = new ADNode();
-		node.appAgentPresent = (nodeJSON.get("appAgentPresent")).toString();
-		node.appAgentVersion = (nodeJSON.get("appAgentVersion")).toString();
-		node.id = (nodeJSON.get("id")).toString();
-		node.machineAgentPresent = (nodeJSON.get("machineAgentPresent")).toString();
-		node.machineAgentVersion = (nodeJSON.get("machineAgentVersion")).toString();
-		node.machineId = (nodeJSON.get("machineId")).toString();
-		node.machineName = (nodeJSON.getString("machineName")).toString();
-		node.machineOSType = (nodeJSON.getString("machineOSType")).toString();
-		node.name = (nodeJSON.get("name")).toString();
-		node.nodeUniqueLocalId = (nodeJSON.getString("nodeUniqueLocalId")).toString();
-		node.tierId = (nodeJSON.get("tierId")).toString();
-		node.tierName = (nodeJSON.get("tierName")).toString();
-		node.type = (nodeJSON.get("type")).toString();
-
-		nodes.add(node);
+		lastList(nodes).add(TypeBinders.bind(nodeJSON, TypeBinders.NODE));
 	}
 
 	/**
-	 * Adds a single tier instance into the tier array
+	 * Adds a single tier instance into the list the last tier query returned
 	 * @param 	tierJSON 	JSON object captured from the REST request
 	 * @throws 				JSONException
+	 * @deprecated	See {@link #addApplication(JSONObject)}
 	 */
+	@Deprecated
 	public void addTier(JSONObject tierJSON) throws JSONException
 	{
-		ADTier tier = new ADTier();
-		tier.agentType = (tierJSON.get("agentType")).toString();
-		tier.id = (tierJSON.get("id")).toString();
-		tier.description = (tierJSON.get("description")).toString();
-		tier.name = (tierJSON.get("name")).toString();
-		tier.numberOfNodes = (tierJSON.get("numberOfNodes")).toString();
-		tier.type = (tierJSON.get("type")).toString();
-
-		tiers.add(tier);
+		lastList(tiers).add(TypeBinders.bind(tierJSON, TypeBinders.TIER));
 	}
 
 	/**
-	 * Adds a single metric Instance into the metric array
+	 * Adds a single metric instance into the list the last metric query returned
 	 * @param 	metricJSON 	JSON captured from the REST request
 	 * @throws 				JSONException
+	 * @deprecated	See {@link #addApplication(JSONObject)}
 	 */
+	@Deprecated
 	public void addMetric(JSONObject metricJSON) throws JSONException
 	{
 		ADMetric metric = new ADMetric();
@@ -1463,50 +1778,19 @@ public class RESTToolkit
 		metric.startTimeInMillis = metricJSON.getLong("startTimeInMillis");
 		metric.value = metricJSON.getLong("value");
 
-		metrics.add(metric);
+		lastList(metrics).add(metric);
 	}
 
 	/**
-	 * Adds a single event instance into the events array
+	 * Adds a single event instance into the list the last event query returned
 	 * @param 	eventJSON	JSON object captured from REST request
 	 * @throws 				JSONException
+	 * @deprecated	See {@link #addApplication(JSONObject)}
 	 */
-	public void addEvent(JSONObject eventJSON) throws JSONException 
+	@Deprecated
+	public void addEvent(JSONObject eventJSON) throws JSONException
 	{
-		ADEvent event = new ADEvent();
-
-		JSONArray entitiesJSON = eventJSON.getJSONArray("affectedEntities");
-
-		event.affectedEntities = new ArrayList<ADEntity>();
-
-		for (int jMetricPos = 0; jMetricPos < entitiesJSON.length(); jMetricPos++)
-		{
-			addEntity(entitiesJSON.getJSONObject(jMetricPos), event);
-		}
-
-		event.archived = eventJSON.getBoolean("archived");
-		event.deepLinkUrl = eventJSON.getString("deepLinkUrl");
-		event.eventTime = eventJSON.getLong("eventTime");
-		event.id = eventJSON.getInt("id");
-		event.markedAsRead = eventJSON.getBoolean("markedAsRead");
-		event.markedAsResolved = eventJSON.getBoolean("markedAsResolved");
-		event.severity = eventJSON.getString("severity");
-		event.subType = eventJSON.getString("subType");
-		event.summary = eventJSON.getString("summary");
-
-		if (eventJSON.get("triggeredEntity").toString() == "null")
-		{
-			event.triggeredEntity = null;
-		}
-		else
-		{
-			event.triggeredEntity.entityId = eventJSON.getJSONObject("triggeredEntity").getInt("entityId");
-			event.triggeredEntity.entityType = eventJSON.getJSONObject("triggeredEntity").getString("entityType");
-		}
-
-		event.type = eventJSON.getString("type");
-
-		events.add(event);
+		lastList(events).add(TypeBinders.bind(eventJSON, TypeBinders.EVENT));
 	}
 
 	/**
@@ -1517,10 +1801,23 @@ public class RESTToolkit
 	 */
 	public void addEntity(JSONObject entityJSON, ADEvent event) throws JSONException
 	{
-		ADEntity entity = new ADEntity();
-		entity.entityId = entityJSON.getInt("entityId");
-		entity.entityType = entityJSON.getString("entityType");
+		if (event.affectedEntities == null)
+		{
+			event.affectedEntities = new ArrayList<ADEntity>();
+		}
+		event.affectedEntities.add(TypeBinders.bind(entityJSON, TypeBinders.ENTITY));
+	}
 
-		event.affectedEntities.add(entity);
+	/**
+	 * Gets the list a deprecated add* method appends to
+	 * @throws 	IllegalStateException	if no query of that kind has returned yet
+	 */
+	private static <T> ArrayList<T> lastList(ArrayList<T> list)
+	{
+		if (list == null)
+		{
+			throw new IllegalStateException("No query has returned a list to add to");
+		}
+		return list;
 	}
 }
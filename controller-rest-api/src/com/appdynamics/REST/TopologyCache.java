@@ -0,0 +1,296 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.appdynamics.JSON.JSONException;
+
+/**
+ * Time-to-live cache for the application, tier, business transaction and node listings of a controller.
+ *
+ * A listing is fetched from the controller the first time it is requested. Until its time to live
+ * runs out it is served from memory. After that the expired listing is still served, and a single
+ * background refresh replaces it, so lookups only wait for the controller before the first load or
+ * after an explicit invalidation. A failed refresh keeps the previous listing.
+ */
+public class TopologyCache
+{
+	public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+	static final String APPLICATIONS = "applications";
+	static final String TIERS = "tiers";
+	static final String BUSINESS_TRANSACTIONS = "business-transactions";
+	static final String NODES = "nodes";
+
+	private volatile long applicationsTTL = DEFAULT_TTL;
+	private volatile long tiersTTL = DEFAULT_TTL;
+	private volatile long btsTTL = DEFAULT_TTL;
+	private volatile long nodesTTL = DEFAULT_TTL;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final ExecutorService refresher;
+	private final AtomicLong version = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong refreshFailures = new AtomicLong();
+
+	TopologyCache()
+	{
+		refresher = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "topology-cache-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Sets how long listings stay fresh. A value of 0 refreshes a listing in the background on every lookup.
+	 * @param 	applications			(Milliseconds) Time to live of the application listing
+	 * @param 	tiers					(Milliseconds) Time to live of the tier listings
+	 * @param 	businessTransactions	(Milliseconds) Time to live of the business transaction listings
+	 * @param 	nodes					(Milliseconds) Time to live of the node listings
+	 */
+	public void setTTLs(long applications, long tiers, long businessTransactions, long nodes)
+	{
+		this.applicationsTTL = applications;
+		this.tiersTTL = tiers;
+		this.btsTTL = businessTransactions;
+		this.nodesTTL = nodes;
+	}
+
+	/**
+	 * Drops every cached listing, so that the next lookups fetch them from the controller.
+	 */
+	public void invalidate()
+	{
+		entries.clear();
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Drops the cached tier, business transaction and node listings of one application.
+	 * @param 	app		Application Name or Application ID, as passed to the toolkit
+	 */
+	public void invalidate(String app)
+	{
+		entries.remove(key(TIERS, app));
+		entries.remove(key(BUSINESS_TRANSACTIONS, app));
+		entries.remove(key(NODES, app));
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Gets a snapshot of the cache counters
+	 * @return		TopologyCacheStatistics - Hit, miss and refresh counters
+	 */
+	public TopologyCacheStatistics getStatistics()
+	{
+		return new TopologyCacheStatistics(hits.get(), staleHits.get(), misses.get(), refreshes.get(),
+				refreshFailures.get(), entries.size());
+	}
+
+	/**
+	 * Gets a listing, loading it on first use
+	 * @param 	type		One of APPLICATIONS, TIERS, BUSINESS_TRANSACTIONS or NODES
+	 * @param 	app			Application the listing belongs to, or null for the application listing
+	 * @param 	loader		Fetches the listing from the controller
+	 * @return				The cached listing. Callers must not modify it.
+	 * @throws 				JSONException if the listing is not cached and could not be loaded
+	 */
+	<T> T get(String type, String app, Loader<T> loader) throws JSONException
+	{
+		return get(type, app, loader, null);
+	}
+
+	/**
+	 * Gets a listing, loading it on first use
+	 * @param 	type		One of APPLICATIONS, TIERS, BUSINESS_TRANSACTIONS or NODES
+	 * @param 	app			Application the listing belongs to, or null for the application listing
+	 * @param 	loader		Fetches the listing from the controller
+	 * @param 	stores		Incremented if this lookup loads and stores the listing, which moves the
+	 * 						version by one, may be null
+	 * @return				The cached listing. Callers must not modify it.
+	 * @throws 				JSONException if the listing is not cached and could not be loaded
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T get(String type, String app, final Loader<T> loader, AtomicInteger stores) throws JSONException
+	{
+		String key = key(type, app);
+		Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			Entry created = new Entry();
+			entry = entries.putIfAbsent(key, created);
+			if (entry == null)
+			{
+				entry = created;
+			}
+		}
+
+		Object value = entry.value;
+		if (value == null)
+		{
+			// concurrent first lookups wait for a single load. The lock is held across the request,
+			// a ReentrantLock does not pin the carrier thread of a virtual thread meanwhile
+			entry.loading.lock();
+			try
+			{
+				if (entry.value == null)
+				{
+					misses.incrementAndGet();
+					store(entry, loader.load());
+					if (stores != null)
+					{
+						stores.incrementAndGet();
+					}
+				}
+				else
+				{
+					hits.incrementAndGet();
+				}
+				return (T) entry.value;
+			}
+			finally
+			{
+				entry.loading.unlock();
+			}
+		}
+
+		if (System.currentTimeMillis() - entry.loadedAt <= ttl(type))
+		{
+			hits.incrementAndGet();
+			return (T) value;
+		}
+
+		staleHits.incrementAndGet();
+		if (entry.refreshing.compareAndSet(false, true))
+		{
+			final Entry stale = entry;
+			refresher.execute(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						store(stale, loader.load());
+						refreshes.incrementAndGet();
+					}
+					catch (Exception e)
+					{
+						refreshFailures.incrementAndGet();
+						e.printStackTrace();
+					}
+					finally
+					{
+						stale.refreshing.set(false);
+					}
+				}
+			});
+		}
+		return (T) value;
+	}
+
+	/**
+	 * @return		A counter that changes whenever a listing is loaded, refreshed or invalidated
+	 */
+	long getVersion()
+	{
+		return version.get();
+	}
+
+	/**
+	 * @return		(Milliseconds) The shortest time to live, after which listings derived from the cache
+	 * 				have to look at it again so that expired listings get refreshed
+	 */
+	long getShortestTTL()
+	{
+		return Math.min(Math.min(applicationsTTL, tiersTTL), Math.min(btsTTL, nodesTTL));
+	}
+
+	void shutdown()
+	{
+		refresher.shutdownNow();
+	}
+
+	private void store(Entry entry, Object value)
+	{
+		entry.set(value);
+		version.incrementAndGet();
+	}
+
+	private long ttl(String type)
+	{
+		if (APPLICATIONS.equals(type))
+		{
+			return applicationsTTL;
+		}
+		if (TIERS.equals(type))
+		{
+			return tiersTTL;
+		}
+		if (BUSINESS_TRANSACTIONS.equals(type))
+		{
+			return btsTTL;
+		}
+		return nodesTTL;
+	}
+
+	private static String key(String type, String app)
+	{
+		return app == null ? type : type + "|" + app;
+	}
+
+	/**
+	 * Fetches a listing from the controller
+	 */
+	interface Loader<T>
+	{
+		T load() throws JSONException;
+	}
+
+	private static class Entry
+	{
+		volatile Object value;
+		volatile long loadedAt;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+		final ReentrantLock loading = new ReentrantLock();
+
+		void set(Object value)
+		{
+			this.loadedAt = System.currentTimeMillis();
+			this.value = value;
+		}
+	}
+}
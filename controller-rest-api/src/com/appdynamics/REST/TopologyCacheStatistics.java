@@ -0,0 +1,87 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+/**
+ * Point-in-time snapshot of the counters of a {@link TopologyCache}.
+ *
+ * hits				= Lookups answered with a fresh cached value
+ * staleHits		= Lookups answered with an expired value while it was refreshed in the background
+ * misses			= Lookups that had to wait for the controller because nothing was cached yet
+ * refreshes		= Background refreshes completed successfully
+ * refreshFailures	= Background refreshes that failed; the previous value is kept
+ * entries			= Number of cached listings
+ */
+public class TopologyCacheStatistics
+{
+	private final long hits;
+	private final long staleHits;
+	private final long misses;
+	private final long refreshes;
+	private final long refreshFailures;
+	private final int entries;
+
+	public TopologyCacheStatistics(long hits, long staleHits, long misses, long refreshes, long refreshFailures,
+			int entries)
+	{
+		this.hits = hits;
+		this.staleHits = staleHits;
+		this.misses = misses;
+		this.refreshes = refreshes;
+		this.refreshFailures = refreshFailures;
+		this.entries = entries;
+	}
+
+	public long getHits()
+	{
+		return hits;
+	}
+
+	public long getStaleHits()
+	{
+		return staleHits;
+	}
+
+	public long getMisses()
+	{
+		return misses;
+	}
+
+	public long getRefreshes()
+	{
+		return refreshes;
+	}
+
+	public long getRefreshFailures()
+	{
+		return refreshFailures;
+	}
+
+	public int getEntries()
+	{
+		return entries;
+	}
+
+	public String toString()
+	{
+		return "[hits: " + hits + "; staleHits: " + staleHits + "; misses: " + misses + "; refreshes: " + refreshes
+				+ "; refreshFailures: " + refreshFailures + "; entries: " + entries + "]";
+	}
+}
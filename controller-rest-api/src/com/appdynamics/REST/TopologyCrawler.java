@@ -0,0 +1,175 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.appdynamics.JSON.JSONException;
+
+/**
+ * Fetches one listing per application concurrently on a bounded pool of threads.
+ *
+ * Results are returned in application order whatever order the requests complete in. An
+ * application whose listing fails is reported to the {@link CrawlErrorHandler} and left out
+ * of the result, the other applications are still returned.
+ */
+class TopologyCrawler
+{
+	public static final int DEFAULT_PARALLELISM = 8;
+
+	private final ThreadPoolExecutor executor;
+	private volatile CrawlErrorHandler errorHandler;
+
+	TopologyCrawler()
+	{
+		final AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(DEFAULT_PARALLELISM, DEFAULT_PARALLELISM, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "topology-crawler-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		errorHandler = new CrawlErrorHandler()
+		{
+			public void applicationFailed(String app, String listing, Exception cause)
+			{
+				cause.printStackTrace();
+			}
+		};
+	}
+
+	/**
+	 * Sets the maximum number of listings fetched at the same time
+	 */
+	synchronized void setParallelism(int parallelism)
+	{
+		if (parallelism < 1)
+		{
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		if (parallelism > executor.getMaximumPoolSize())
+		{
+			executor.setMaximumPoolSize(parallelism);
+			executor.setCorePoolSize(parallelism);
+		}
+		else
+		{
+			executor.setCorePoolSize(parallelism);
+			executor.setMaximumPoolSize(parallelism);
+		}
+	}
+
+	int getParallelism()
+	{
+		return executor.getMaximumPoolSize();
+	}
+
+	void setErrorHandler(CrawlErrorHandler errorHandler)
+	{
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Fetches a listing of every application
+	 * @param 	listing		Kind of listing, used when reporting failures
+	 * @param 	apps		Names of the applications, in the order the listings are returned
+	 * @param 	loader		Fetches the listing of one application
+	 * @return				The listings of the applications that succeeded, in application order
+	 */
+	<T> Crawl<T> crawl(String listing, List<String> apps, final AppLoader<T> loader) throws JSONException
+	{
+		List<Future<T>> futures = new ArrayList<Future<T>>(apps.size());
+		for (final String app : apps)
+		{
+			futures.add(executor.submit(new Callable<T>()
+			{
+				public T call() throws Exception
+				{
+					return loader.load(app);
+				}
+			}));
+		}
+
+		Crawl<T> crawl = new Crawl<T>(apps.size());
+		for (int i = 0; i < futures.size(); i++)
+		{
+			try
+			{
+				crawl.listings.add(futures.get(i).get());
+			}
+			catch (ExecutionException e)
+			{
+				crawl.failures++;
+				Throwable cause = e.getCause();
+				errorHandler.applicationFailed(apps.get(i), listing,
+						cause instanceof Exception ? (Exception) cause : new Exception(cause));
+			}
+			catch (InterruptedException e)
+			{
+				for (Future<T> future : futures)
+				{
+					future.cancel(true);
+				}
+				Thread.currentThread().interrupt();
+				throw new JSONException(e);
+			}
+		}
+		return crawl;
+	}
+
+	void shutdown()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Fetches the listing of one application
+	 */
+	interface AppLoader<T>
+	{
+		T load(String app) throws JSONException;
+	}
+
+	static class Crawl<T>
+	{
+		final List<T> listings;
+		int failures;
+
+		Crawl(int size)
+		{
+			listings = new ArrayList<T>(size);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable hash indexes over the cached listings of one entity type across all applications.
+ *
+ * Entities are indexed by id, by name and by a grouping key such as the tier they belong to, so
+ * that the toolkit's *ById, *ByName and *FromTier lookups do not scan the listings. When two
+ * entities share a name the one listed first wins, as it did with the former linear scans.
+ *
+ * An index is built against a version of the {@link TopologyCache} and has to be rebuilt once
+ * the cache has replaced any listing.
+ */
+class TopologyIndex<T>
+{
+	private final long version;
+	private final long expiresAt;
+
+	private final List<T> all;
+	private final Map<String, T> byId;
+	private final Map<String, T> byName;
+	private final Map<String, List<T>> byGroup;
+
+	/**
+	 * @param 	listings	Cached listings of every application, in application order
+	 * @param 	keys		Extracts the indexed keys of an entity
+	 * @param 	version		Version of the topology cache the listings were read at
+	 * @param 	expiresAt	Time after which the listings have to be read from the cache again
+	 */
+	TopologyIndex(List<? extends List<T>> listings, Keys<T> keys, long version, long expiresAt)
+	{
+		this.version = version;
+		this.expiresAt = expiresAt;
+
+		int size = 0;
+		for (List<T> listing : listings)
+		{
+			size += listing.size();
+		}
+
+		List<T> entities = new ArrayList<T>(size);
+		Map<String, T> ids = new HashMap<String, T>(size * 4 / 3 + 1);
+		Map<String, T> names = new HashMap<String, T>(size * 4 / 3 + 1);
+		Map<String, List<T>> groups = new HashMap<String, List<T>>();
+
+		for (List<T> listing : listings)
+		{
+			for (T entity : listing)
+			{
+				entities.add(entity);
+				putFirst(ids, keys.id(entity), entity);
+				putFirst(names, keys.name(entity), entity);
+
+				String group = keys.group(entity);
+				if (group != null)
+				{
+					List<T> members = groups.get(group);
+					if (members == null)
+					{
+						members = new ArrayList<T>();
+						groups.put(group, members);
+					}
+					members.add(entity);
+				}
+			}
+		}
+
+		for (Map.Entry<String, List<T>> group : groups.entrySet())
+		{
+			group.setValue(Collections.unmodifiableList(group.getValue()));
+		}
+
+		this.all = Collections.unmodifiableList(entities);
+		this.byId = ids;
+		this.byName = names;
+		this.byGroup = groups;
+	}
+
+	/**
+	 * @return		True if the index still reflects the listings held by the cache
+	 */
+	boolean isCurrent(long cacheVersion)
+	{
+		return version == cacheVersion && System.currentTimeMillis() < expiresAt;
+	}
+
+	List<T> getAll()
+	{
+		return all;
+	}
+
+	T getById(String id)
+	{
+		return byId.get(id);
+	}
+
+	T getByName(String name)
+	{
+		return byName.get(name);
+	}
+
+	List<T> getGroup(String group)
+	{
+		List<T> members = byGroup.get(group);
+		return members == null ? Collections.<T>emptyList() : members;
+	}
+
+	private static <T> void putFirst(Map<String, T> map, String key, T entity)
+	{
+		if (key != null && !map.containsKey(key))
+		{
+			map.put(key, entity);
+		}
+	}
+
+	/**
+	 * Extracts the indexed keys of an entity
+	 */
+	interface Keys<T>
+	{
+		String id(T entity);
+
+		String name(T entity);
+
+		/**
+		 * @return		Grouping key of the entity, or null if the entity type is not grouped
+		 */
+		String group(T entity);
+	}
+}
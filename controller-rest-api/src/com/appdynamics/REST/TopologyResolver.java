@@ -0,0 +1,89 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.appdynamics.JSON.JSONException;
+import com.appdynamics.TypeREST.ADBusinessTransaction;
+
+/**
+ * Resolves business transactions to the tier they belong to.
+ *
+ * Business transaction metric paths contain the tier name, which the controller only reports
+ * through the business-transactions listing. The resolver reads the cached listing of the queried
+ * application and keeps a name to tier map for it until the cache replaces the listing, so polling
+ * many business transactions costs one metric request each instead of a full topology crawl each.
+ */
+class TopologyResolver
+{
+	private final RESTToolkit toolkit;
+
+	// application -> business transaction name -> tier name, with the listing it was built from
+	private final Map<String, BTTiers> btTiers = new HashMap<String, BTTiers>();
+
+	TopologyResolver(RESTToolkit toolkit)
+	{
+		this.toolkit = toolkit;
+	}
+
+	/**
+	 * Gets the tier name of a business transaction
+	 * @param 	app			Application Name or Application ID
+	 * @param 	btName		Business Transaction Name
+	 * @return				Name of the tier, or an empty string if the application has no such business transaction
+	 * @throws 				JSONException
+	 */
+	String getTierNameForBT(String app, String btName) throws JSONException
+	{
+		List<ADBusinessTransaction> listing = toolkit.getCachedBTsFromApp(app);
+
+		BTTiers tiers;
+		synchronized (btTiers)
+		{
+			tiers = btTiers.get(app);
+			if (tiers == null || tiers.listing != listing)
+			{
+				tiers = new BTTiers(listing);
+				btTiers.put(app, tiers);
+			}
+		}
+
+		String tierName = tiers.byName.get(btName);
+		return tierName == null ? "" : tierName;
+	}
+
+	private static class BTTiers
+	{
+		final List<ADBusinessTransaction> listing;
+		final Map<String, String> byName = new HashMap<String, String>();
+
+		BTTiers(List<ADBusinessTransaction> listing)
+		{
+			this.listing = listing;
+			for (ADBusinessTransaction bt : listing)
+			{
+				byName.put(bt.name, bt.tierName);
+			}
+		}
+	}
+}
@@ -0,0 +1,510 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import com.appdynamics.JSON.JSONBinder;
+import com.appdynamics.JSON.JSONException;
+import com.appdynamics.JSON.JSONObject;
+import com.appdynamics.JSON.JSONPath;
+import com.appdynamics.JSON.JSONPullParser;
+import com.appdynamics.JSON.JSONPullParser.Token;
+import com.appdynamics.TypeREST.ADApplication;
+import com.appdynamics.TypeREST.ADBusinessTransaction;
+import com.appdynamics.TypeREST.ADEntity;
+import com.appdynamics.TypeREST.ADEvent;
+import com.appdynamics.TypeREST.ADMetric;
+import com.appdynamics.TypeREST.ADNode;
+import com.appdynamics.TypeREST.ADTier;
+
+/**
+ * Reads controller responses straight from the token stream into the TypeREST classes.
+ *
+ * Each field is converted as its token is read and fields the classes do not have are skipped,
+ * so no JSONObject or JSONArray is built for a response. Fields missing from a response are left
+ * at their default value. Topology classes keep every field as text: numbers, booleans and null
+ * are stored as they were written in the response.
+ */
+final class TypeBinders
+{
+	static final JSONBinder<ADApplication> APPLICATION = TypeBinders::bindApplication;
+	static final JSONBinder<ADBusinessTransaction> BUSINESS_TRANSACTION = TypeBinders::bindBT;
+	static final JSONBinder<ADTier> TIER = TypeBinders::bindTier;
+	static final JSONBinder<ADNode> NODE = TypeBinders::bindNode;
+	static final JSONBinder<ADEvent> EVENT = TypeBinders::bindEvent;
+	static final JSONBinder<ADEntity> ENTITY = TypeBinders::bindEntity;
+
+	// parts of a metric-data response that are decoded, indexed by the constants below
+	private static final JSONPath[] METRIC_DATA = compile("$", "$[*]", "$[*].metricPath", "$[*].metricValues[*]",
+			"$[*].metricValues[*].current", "$[*].metricValues[*].max", "$[*].metricValues[*].min",
+			"$[*].metricValues[*].startTimeInMillis", "$[*].metricValues[*].value");
+	private static final int RESPONSE = 0;
+	private static final int METRIC_OBJECT = 1;
+	private static final int METRIC_PATH = 2;
+	private static final int METRIC_VALUE = 3;
+	private static final int CURRENT = 4;
+	private static final int MAX = 5;
+	private static final int MIN = 6;
+	private static final int START_TIME = 7;
+	private static final int VALUE = 8;
+
+	private TypeBinders()
+	{
+	}
+
+	/**
+	 * Reads a response made of one array of objects. Short string values repeated across the
+	 * objects, like tier names and agent types, share one String in the returned list.
+	 * @param 	parser		Parser on a response that has not been read yet
+	 * @param 	binder		Reads each element of the array
+	 * @return				The elements, in response order
+	 * @throws 	JSONException	if the response is not one array of objects, or has text after the array
+	 */
+	static <T> ArrayList<T> readList(JSONPullParser parser, JSONBinder<T> binder) throws JSONException
+	{
+		parser.setCanonicalValues(true);
+		if (parser.next() != Token.START_ARRAY)
+		{
+			throw parser.syntaxError("A JSONArray text must start with '['");
+		}
+		ArrayList<T> values = bindArray(parser, binder);
+
+		// reading to the end of the response lets the connection go back to the pool
+		if (parser.next() != null)
+		{
+			throw parser.syntaxError("Unexpected text after the end of the JSONArray");
+		}
+		return values;
+	}
+
+	/**
+	 * Binds one object that has already been parsed into a JSONObject, for the deprecated add*
+	 * methods of RESTToolkit
+	 * @param 	json		The object
+	 * @param 	binder		Reads the object
+	 * @return				The bound value
+	 * @throws 	JSONException	if the binder cannot read the object
+	 */
+	static <T> T bind(JSONObject json, JSONBinder<T> binder) throws JSONException
+	{
+		JSONPullParser parser = new JSONPullParser(json.toString());
+		try
+		{
+			parser.next();
+			return binder.bind(parser);
+		}
+		finally
+		{
+			parser.close();
+		}
+	}
+
+	/**
+	 * Reads a metric-data response, adding the values of each metric to the list of its metric path.
+	 * A metric without a metric path is added to defaultPath. Every metric in the response gets
+	 * an entry, even one without values. Only the metric paths and the fields of ADMetric are
+	 * decoded, everything else is skipped unread and field names are never made into strings.
+	 * @param 	parser			Parser on a response that has not been read yet
+	 * @param 	defaultPath		Metric path of the query
+	 * @param 	metricData		Values by metric path, in response order
+	 */
+	static void readMetricData(JSONPullParser parser, String defaultPath, Map<String, ArrayList<ADMetric>> metricData)
+			throws JSONException
+	{
+		if (parser.nextMatch(METRIC_DATA) != RESPONSE || parser.getToken() != Token.START_ARRAY)
+		{
+			throw parser.syntaxError("A JSONArray text must start with '['");
+		}
+
+		// the path may come after the values, which are kept aside until the next metric starts
+		String metricPath = null;
+		ArrayList<ADMetric> values = null;
+		ADMetric metric = null;
+		int match;
+		while ((match = parser.nextMatch(METRIC_DATA)) != -1)
+		{
+			switch (match)
+			{
+			case METRIC_OBJECT:
+				expectObject(parser);
+				if (values != null)
+				{
+					addMetricValues(metricData, metricPath, values);
+				}
+				metricPath = defaultPath;
+				values = new ArrayList<ADMetric>();
+				break;
+			case METRIC_PATH:
+				metricPath = string(parser);
+				break;
+			case METRIC_VALUE:
+				expectObject(parser);
+				metric = new ADMetric();
+				values.add(metric);
+				break;
+			case CURRENT:
+				metric.current = parser.getLong();
+				break;
+			case MAX:
+				metric.max = parser.getLong();
+				break;
+			case MIN:
+				metric.min = parser.getLong();
+				break;
+			case START_TIME:
+				metric.startTimeInMillis = parser.getLong();
+				break;
+			case VALUE:
+				metric.value = parser.getLong();
+			}
+		}
+		if (values != null)
+		{
+			addMetricValues(metricData, metricPath, values);
+		}
+	}
+
+	private static void addMetricValues(Map<String, ArrayList<ADMetric>> metricData, String metricPath,
+			ArrayList<ADMetric> values)
+	{
+		ArrayList<ADMetric> metrics = metricData.get(metricPath);
+		if (metrics == null)
+		{
+			metricData.put(metricPath, values);
+		}
+		else
+		{
+			metrics.addAll(values);
+		}
+	}
+
+	/**
+	 * Reads the array the parser is on. A null is read as an empty list.
+	 */
+	private static <T> ArrayList<T> bindArray(JSONPullParser parser, JSONBinder<T> binder) throws JSONException
+	{
+		ArrayList<T> values = new ArrayList<T>();
+		if (parser.getToken() == Token.VALUE_NULL)
+		{
+			return values;
+		}
+		if (parser.getToken() != Token.START_ARRAY)
+		{
+			throw parser.syntaxError("Expected a JSONArray instead of " + parser.getToken());
+		}
+		while (parser.next() != Token.END_ARRAY)
+		{
+			values.add(binder.bind(parser));
+		}
+		return values;
+	}
+
+	private static ADApplication bindApplication(JSONPullParser parser) throws JSONException
+	{
+		ADApplication application = new ADApplication();
+
+		expectObject(parser);
+		while (parser.next() == Token.FIELD_NAME)
+		{
+			String field = parser.getText();
+			parser.next();
+			switch (field)
+			{
+			case "id":
+				application.id = text(parser);
+				break;
+			case "description":
+				application.description = text(parser);
+				break;
+			case "name":
+				application.name = text(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		return application;
+	}
+
+	private static ADBusinessTransaction bindBT(JSONPullParser parser) throws JSONException
+	{
+		ADBusinessTransaction BT = new ADBusinessTransaction();
+
+		expectObject(parser);
+		while (parser.next() == Token.FIELD_NAME)
+		{
+			String field = parser.getText();
+			parser.next();
+			switch (field)
+			{
+			case "id":
+				BT.id = text(parser);
+				break;
+			case "background":
+				BT.background = text(parser);
+				break;
+			case "entryPointType":
+				BT.entryPointType = text(parser);
+				break;
+			case "internalName":
+				BT.internalName = text(parser);
+				break;
+			case "name":
+				BT.name = text(parser);
+				break;
+			case "tierId":
+				BT.tierId = text(parser);
+				break;
+			case "tierName":
+				BT.tierName = text(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		return BT;
+	}
+
+	private static ADTier bindTier(JSONPullParser parser) throws JSONException
+	{
+		ADTier tier = new ADTier();
+
+		expectObject(parser);
+		while (parser.next() == Token.FIELD_NAME)
+		{
+			String field = parser.getText();
+			parser.next();
+			switch (field)
+			{
+			case "agentType":
+				tier.agentType = text(parser);
+				break;
+			case "id":
+				tier.id = text(parser);
+				break;
+			case "description":
+				tier.description = text(parser);
+				break;
+			case "name":
+				tier.name = text(parser);
+				break;
+			case "numberOfNodes":
+				tier.numberOfNodes = text(parser);
+				break;
+			case "type":
+				tier.type = text(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		return tier;
+	}
+
+	private static ADNode bindNode(JSONPullParser parser) throws JSONException
+	{
+		ADNode node = new ADNode();
+
+		expectObject(parser);
+		while (parser.next() == Token.FIELD_NAME)
+		{
+			String field = parser.getText();
+			parser.next();
+			switch (field)
+			{
+			case "appAgentPresent":
+				node.appAgentPresent = text(parser);
+				break;
+			case "appAgentVersion":
+				node.appAgentVersion = text(parser);
+				break;
+			case "id":
+				node.id = text(parser);
+				break;
+			case "machineAgentPresent":
+				node.machineAgentPresent = text(parser);
+				break;
+			case "machineAgentVersion":
+				node.machineAgentVersion = text(parser);
+				break;
+			case "machineId":
+				node.machineId = text(parser);
+				break;
+			case "machineName":
+				node.machineName = text(parser);
+				break;
+			case "machineOSType":
+				node.machineOSType = text(parser);
+				break;
+			case "name":
+				node.name = text(parser);
+				break;
+			case "nodeUniqueLocalId":
+				node.nodeUniqueLocalId = text(parser);
+				break;
+			case "tierId":
+				node.tierId = text(parser);
+				break;
+			case "tierName":
+				node.tierName = text(parser);
+				break;
+			case "type":
+				node.type = text(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		return node;
+	}
+
+	private static ADEvent bindEvent(JSONPullParser parser) throws JSONException
+	{
+		ADEvent event = new ADEvent();
+		event.affectedEntities = new ArrayList<ADEntity>();
+
+		expectObject(parser);
+		while (parser.next() == Token.FIELD_NAME)
+		{
+			String field = parser.getText();
+			parser.next();
+			switch (field)
+			{
+			case "affectedEntities":
+				event.affectedEntities = bindArray(parser, ENTITY);
+				break;
+			case "archived":
+				event.archived = parser.getBoolean();
+				break;
+			case "deepLinkUrl":
+				event.deepLinkUrl = string(parser);
+				break;
+			case "eventTime":
+				event.eventTime = parser.getLong();
+				break;
+			case "id":
+				event.id = parser.getInt();
+				break;
+			case "markedAsRead":
+				event.markedAsRead = parser.getBoolean();
+				break;
+			case "markedAsResolved":
+				event.markedAsResolved = parser.getBoolean();
+				break;
+			case "severity":
+				event.severity = string(parser);
+				break;
+			case "subType":
+				event.subType = string(parser);
+				break;
+			case "summary":
+				event.summary = string(parser);
+				break;
+			case "triggeredEntity":
+				event.triggeredEntity = parser.getToken() == Token.VALUE_NULL ? null : bindEntity(parser);
+				break;
+			case "type":
+				event.type = string(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		return event;
+	}
+
+	private static ADEntity bindEntity(JSONPullParser parser) throws JSONException
+	{
+		ADEntity entity = new ADEntity();
+
+		expectObject(parser);
+		while (parser.next() == Token.FIELD_NAME)
+		{
+			String field = parser.getText();
+			parser.next();
+			switch (field)
+			{
+			case "entityId":
+				entity.entityId = parser.getToken() == Token.VALUE_NULL ? null : parser.getInt();
+				break;
+			case "entityType":
+				entity.entityType = string(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		return entity;
+	}
+
+	private static JSONPath[] compile(String... expressions)
+	{
+		JSONPath[] paths = new JSONPath[expressions.length];
+		try
+		{
+			for (int i = 0; i < expressions.length; i++)
+			{
+				paths[i] = JSONPath.compile(expressions[i]);
+			}
+		}
+		catch (JSONException e)
+		{
+			throw new IllegalArgumentException(e);
+		}
+		return paths;
+	}
+
+	private static void expectObject(JSONPullParser parser) throws JSONException
+	{
+		if (parser.getToken() != Token.START_OBJECT)
+		{
+			throw parser.syntaxError("Expected a JSONObject instead of " + parser.getToken());
+		}
+	}
+
+	/**
+	 * Reads a scalar as it was written in the response, e.g. 5, true or null. Objects and arrays are skipped.
+	 */
+	private static String text(JSONPullParser parser) throws JSONException
+	{
+		if (parser.getToken() == Token.START_OBJECT || parser.getToken() == Token.START_ARRAY)
+		{
+			parser.skipChildren();
+			return null;
+		}
+		return parser.getText();
+	}
+
+	/**
+	 * Reads a scalar as text, with null read as null
+	 */
+	private static String string(JSONPullParser parser) throws JSONException
+	{
+		return parser.getToken() == Token.VALUE_NULL ? null : text(parser);
+	}
+}
@@ -0,0 +1,402 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Bounded pool of keep-alive connections, kept per controller host.
+ *
+ * At most maxPerRoute connections are open to a single host. Callers asking for more wait until
+ * one is released. Released connections are reused most recently used first, so that surplus
+ * connections age out and are evicted once they have been idle for longer than the idle timeout.
+ *
+ * The pool is guarded by a ReentrantLock rather than the object monitor, so that callers running
+ * on virtual threads release their carrier thread while waiting for a connection.
+ *
+ * HTTPS connections are opened with a single SSLSocketFactory, whose SSLContext caches the TLS sessions
+ * of each host, so that a new connection to a host resumes the session of an earlier one instead of
+ * going through a full handshake. Kept-alive connections need no handshake at all.
+ */
+class ConnectionPool
+{
+	private final int maxPerRoute;
+	private final long idleTimeout;
+	private final SSLSocketFactory sslSocketFactory;
+	private volatile int connectTimeout;
+	private volatile int readTimeout;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+
+	private final Map<String, Route> routes = new HashMap<String, Route>();
+	private long lastEviction = System.currentTimeMillis();
+	private boolean shutdown;
+
+	private int leased;
+	private int pending;
+	private long created;
+	private long evicted;
+	private long received;
+	private long handshakes;
+	private long resumed;
+	private long timeouts;
+
+	ConnectionPool(int maxPerRoute, long idleTimeout, SSLSocketFactory sslSocketFactory)
+	{
+		this.maxPerRoute = maxPerRoute;
+		this.idleTimeout = idleTimeout;
+		this.sslSocketFactory = sslSocketFactory;
+	}
+
+	/**
+	 * @param 	connectTimeout	(Milliseconds) Longest wait for a new connection to be established, 0 for no limit
+	 * @param 	readTimeout		(Milliseconds) Longest wait for data from the server, 0 for no limit
+	 */
+	void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Leases an idle connection to the host, or opens a new one if the host is below its limit.
+	 * Blocks while the limit is reached.
+	 * @param 	secure		True for an HTTPS connection
+	 * @param 	deadline	Time by which the request has to be completed, 0 for none
+	 * @throws 	SocketTimeoutException if the deadline passes before a connection is available
+	 */
+	PooledConnection lease(boolean secure, String host, int port, long deadline) throws IOException
+	{
+		int readTimeout = this.readTimeout;
+		String key = (secure ? "https://" : "http://") + host + ":" + port;
+		Route route;
+
+		lock.lock();
+		try
+		{
+			evictIdleConnections();
+
+			route = routes.get(key);
+			if (route == null)
+			{
+				route = new Route();
+				routes.put(key, route);
+			}
+
+			while (true)
+			{
+				if (shutdown)
+				{
+					throw new IOException("Connection pool has been shut down");
+				}
+
+				PooledConnection conn = route.idle.poll();
+				if (conn != null)
+				{
+					if (conn.isOpen())
+					{
+						route.leased++;
+						leased++;
+						conn.markLeased(readTimeout, deadline);
+						return conn;
+					}
+					evicted++;
+					continue;
+				}
+
+				if (route.leased < maxPerRoute)
+				{
+					// reserve the slot, the socket is opened outside the lock
+					route.leased++;
+					leased++;
+					break;
+				}
+
+				pending++;
+				try
+				{
+					if (deadline == 0)
+					{
+						available.await();
+					}
+					else if (!available.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS))
+					{
+						timeouts++;
+						throw new SocketTimeoutException("Deadline exceeded while waiting for a connection to " + key);
+					}
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for a connection to " + key);
+				}
+				finally
+				{
+					pending--;
+				}
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		boolean opened = false;
+		long handshakeStart = System.currentTimeMillis();
+		Socket socket = null;
+		try
+		{
+			int timeout = timeoutBefore(deadline, connectTimeout);
+			socket = secure ? openSecureSocket(host, port, timeout) : openSocket(host, port, timeout);
+			PooledConnection conn = new PooledConnection(key, socket);
+			conn.markLeased(readTimeout, deadline);
+			opened = true;
+			return conn;
+		}
+		catch (SocketTimeoutException e)
+		{
+			lock.lock();
+			try
+			{
+				timeouts++;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			throw e;
+		}
+		finally
+		{
+			lock.lock();
+			try
+			{
+				if (opened)
+				{
+					created++;
+					if (secure)
+					{
+						handshakes++;
+						// a resumed session keeps the creation time of the handshake that established it
+						SSLSession session = ((SSLSocket) socket).getSession();
+						if (session.getCreationTime() < handshakeStart)
+						{
+							resumed++;
+						}
+					}
+				}
+				else
+				{
+					route.leased--;
+					leased--;
+					available.signalAll();
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Hands a leased connection back to the pool
+	 * @param 	conn		Connection that was returned by {@link #lease}
+	 * @param 	reusable	False if the connection is in an unknown state and has to be closed
+	 */
+	void release(PooledConnection conn, boolean reusable)
+	{
+		lock.lock();
+		try
+		{
+			Route route = routes.get(conn.route);
+			route.leased--;
+			leased--;
+			received += conn.takeReceived();
+			if (conn.takeTimedOut())
+			{
+				timeouts++;
+			}
+
+			if (reusable && !shutdown && conn.isOpen())
+			{
+				conn.markIdle(System.currentTimeMillis());
+				route.idle.addFirst(conn);
+			}
+			else
+			{
+				conn.close();
+			}
+
+			available.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	PoolStatistics getStatistics(long requests, long logins, long retries)
+	{
+		lock.lock();
+		try
+		{
+			int idle = 0;
+			for (Route route : routes.values())
+			{
+				idle += route.idle.size();
+			}
+			return new PoolStatistics(leased, idle, pending, maxPerRoute, created, evicted, requests, logins,
+					retries, timeouts, received, handshakes, resumed);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	void shutdown()
+	{
+		lock.lock();
+		try
+		{
+			shutdown = true;
+			for (Route route : routes.values())
+			{
+				for (PooledConnection conn : route.idle)
+				{
+					conn.close();
+				}
+				route.idle.clear();
+			}
+			available.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param 	connectTimeout	(Milliseconds) Longest wait for the connection to be established, 0 for no limit
+	 */
+	protected Socket openSocket(String host, int port, int connectTimeout) throws IOException
+	{
+		Socket socket = new Socket();
+		socket.connect(new InetSocketAddress(host, port), connectTimeout);
+		socket.setTcpNoDelay(true);
+		socket.setKeepAlive(true);
+		return socket;
+	}
+
+	/**
+	 * Opens a connection and completes the TLS handshake on it, verifying that the certificate of the
+	 * server matches the host name. The handshake is bounded by the connect timeout as well.
+	 */
+	protected SSLSocket openSecureSocket(String host, int port, int connectTimeout) throws IOException
+	{
+		Socket socket = openSocket(host, port, connectTimeout);
+		try
+		{
+			socket.setSoTimeout(connectTimeout);
+			SSLSocket ssl = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+			SSLParameters parameters = ssl.getSSLParameters();
+			parameters.setEndpointIdentificationAlgorithm("HTTPS");
+			ssl.setSSLParameters(parameters);
+			ssl.startHandshake();
+			return ssl;
+		}
+		catch (IOException e)
+		{
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return		The timeout, shortened so that it ends by the deadline
+	 * @throws 		SocketTimeoutException if the deadline has passed
+	 */
+	private static int timeoutBefore(long deadline, int timeout) throws SocketTimeoutException
+	{
+		if (deadline == 0)
+		{
+			return timeout;
+		}
+		long left = deadline - System.currentTimeMillis();
+		if (left <= 0)
+		{
+			throw new SocketTimeoutException("Deadline exceeded");
+		}
+		return timeout == 0 || left < timeout ? (int) Math.min(left, Integer.MAX_VALUE) : timeout;
+	}
+
+	/**
+	 * Closes connections that have been idle for longer than the idle timeout.
+	 * Runs at most once per half idle timeout. Must be called holding the pool lock.
+	 */
+	private void evictIdleConnections()
+	{
+		long now = System.currentTimeMillis();
+		if (now - lastEviction < idleTimeout / 2)
+		{
+			return;
+		}
+		lastEviction = now;
+
+		for (Route route : routes.values())
+		{
+			Iterator<PooledConnection> it = route.idle.iterator();
+			while (it.hasNext())
+			{
+				PooledConnection conn = it.next();
+				if (now - conn.getLastUsed() > idleTimeout || !conn.isOpen())
+				{
+					it.remove();
+					conn.close();
+					evicted++;
+				}
+			}
+		}
+	}
+
+	private static class Route
+	{
+		final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+		int leased;
+	}
+}
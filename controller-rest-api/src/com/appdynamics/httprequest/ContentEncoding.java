@@ -0,0 +1,188 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiated compression of response bodies.
+ *
+ * Requests advertise {@link #ACCEPT_ENCODING} and the body of a gzip or deflate encoded response is
+ * decompressed while it is read, so the JSON parser consumes it as it arrives and the compressed body
+ * is never held in memory. Controller responses are repetitive JSON text and typically shrink by a
+ * factor of ten or more on the wire.
+ */
+class ContentEncoding
+{
+	static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Decoded bytes that closing a stream still reads to reach the end of the compressed data, which
+	 * covers the trailer and whitespace a parser leaves after the last value
+	 */
+	private static final int CLOSE_READ_LIMIT = 4096;
+
+	/**
+	 * Wraps a response body in a decompressing stream
+	 * @param 	body				The body as received
+	 * @param 	contentEncoding		Value of the Content-Encoding header, may be null
+	 * @return						The decoded body, or body itself if it is not compressed
+	 * @throws 	IOException			if the body uses an encoding that was not asked for or its header is invalid,
+	 * 								the body is left open
+	 */
+	static InputStream decode(InputStream body, String contentEncoding) throws IOException
+	{
+		String encoding = contentEncoding == null ? "" : contentEncoding.trim().toLowerCase();
+		if (encoding.length() == 0 || encoding.equals("identity"))
+		{
+			return body;
+		}
+		if (encoding.equals("gzip") || encoding.equals("x-gzip"))
+		{
+			return new DecodedInputStream(new GZIPInputStream(body, BUFFER_SIZE), body, null);
+		}
+		if (encoding.equals("deflate"))
+		{
+			// deflate is meant to be zlib wrapped, but some servers send a raw deflate stream
+			PushbackInputStream in = new PushbackInputStream(body, 2);
+			int b0 = in.read();
+			int b1 = b0 == -1 ? -1 : in.read();
+			if (b1 != -1)
+			{
+				in.unread(b1);
+			}
+			if (b0 != -1)
+			{
+				in.unread(b0);
+			}
+			boolean zlib = b1 != -1 && (b0 & 0x0F) == 8 && ((b0 << 8) | b1) % 31 == 0;
+
+			Inflater inflater = new Inflater(!zlib);
+			return new DecodedInputStream(new InflaterInputStream(in, inflater, BUFFER_SIZE), body, inflater);
+		}
+		throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+	}
+
+	/**
+	 * Decompressing stream that reads the underlying body to its end once the compressed data is
+	 * exhausted, as the decompressor stops at the end of the compressed stream and would otherwise
+	 * leave the end of a chunked body unread and the connection unusable.
+	 *
+	 * Parsers usually stop at the end of the last value and close the stream before the decompressor has
+	 * read the compression trailer. Closing therefore first reads on up to CLOSE_READ_LIMIT decoded bytes,
+	 * so that a fully consumed response still goes back to the pool instead of closing its connection.
+	 */
+	private static class DecodedInputStream extends FilterInputStream
+	{
+		private final InputStream body;
+		private final Inflater inflater;
+		private boolean finished;
+
+		DecodedInputStream(InputStream decoder, InputStream body, Inflater inflater)
+		{
+			super(decoder);
+			this.body = body;
+			this.inflater = inflater;
+		}
+
+		public int read() throws IOException
+		{
+			int c = in.read();
+			if (c == -1)
+			{
+				finish();
+			}
+			return c;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int n = in.read(b, off, len);
+			if (n == -1)
+			{
+				finish();
+			}
+			return n;
+		}
+
+		public void close() throws IOException
+		{
+			try
+			{
+				if (!finished)
+				{
+					skipToEnd();
+				}
+			}
+			catch (IOException e)
+			{
+				// the connection is closed below, as its position in the stream is unknown
+			}
+
+			try
+			{
+				in.close();
+			}
+			finally
+			{
+				if (inflater != null)
+				{
+					inflater.end();
+				}
+			}
+		}
+
+		/**
+		 * Reads the rest of the decoded data if it is short, which finishes the body
+		 */
+		private void skipToEnd() throws IOException
+		{
+			byte[] buf = new byte[256];
+			int left = CLOSE_READ_LIMIT;
+			while (left > 0)
+			{
+				int n = read(buf, 0, Math.min(buf.length, left));
+				if (n == -1)
+				{
+					return;
+				}
+				left -= n;
+			}
+		}
+
+		private void finish() throws IOException
+		{
+			finished = true;
+			byte[] buf = new byte[256];
+			while (body.read(buf) != -1)
+			{
+				continue;
+			}
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads exactly one HTTP response body from a pooled connection, whether it is delimited by
+ * Content-Length, chunked transfer encoding or the end of the connection.
+ *
+ * The connection goes back to the pool once the body has been read to the end, which for a chunked
+ * body is when a read finds the zero-length last chunk. Closing the stream before that closes the
+ * connection instead, as its position in the stream is unknown.
+ */
+class HTTPBodyInputStream extends InputStream
+{
+	private static final int CONTENT_LENGTH = 0;
+	private static final int UNTIL_CLOSE = -1;
+	private static final int CHUNKED = -2;
+
+	private final ConnectionPool pool;
+	private final PooledConnection conn;
+	private final InputStream in;
+	private final boolean keepAlive;
+	private final int mode;
+	private final byte[] single = new byte[1];
+
+	private long remaining;
+	private boolean lastChunk;
+	private boolean released;
+
+	/**
+	 * @param 	contentLength	Value of the Content-Length header, or -1 if absent
+	 * @param 	chunked			True if the body uses chunked transfer encoding
+	 * @param 	keepAlive		True if the server allows the connection to be reused
+	 */
+	HTTPBodyInputStream(ConnectionPool pool, PooledConnection conn, long contentLength, boolean chunked,
+			boolean keepAlive)
+	{
+		this.pool = pool;
+		this.conn = conn;
+		this.in = conn.in;
+
+		if (chunked)
+		{
+			mode = CHUNKED;
+			remaining = 0;
+		}
+		else if (contentLength >= 0)
+		{
+			mode = CONTENT_LENGTH;
+			remaining = contentLength;
+		}
+		else
+		{
+			mode = UNTIL_CLOSE;
+			remaining = Long.MAX_VALUE;
+		}
+		this.keepAlive = keepAlive && mode != UNTIL_CLOSE;
+
+		if (mode == CONTENT_LENGTH && remaining == 0)
+		{
+			release(this.keepAlive);
+		}
+	}
+
+	public int read() throws IOException
+	{
+		int n = read(single, 0, 1);
+		return n == -1 ? -1 : single[0] & 0xFF;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (released || len == 0)
+		{
+			return released ? -1 : 0;
+		}
+
+		try
+		{
+			if (atEnd())
+			{
+				release(keepAlive);
+				return -1;
+			}
+
+			int n = in.read(b, off, (int) Math.min(len, remaining));
+			if (n == -1)
+			{
+				if (mode != UNTIL_CLOSE)
+				{
+					throw new EOFException("Premature end of response body from " + conn.route);
+				}
+				release(false);
+				return -1;
+			}
+
+			conn.addReceived(n);
+			if (mode != UNTIL_CLOSE)
+			{
+				remaining -= n;
+			}
+			// the next chunk header is only read by the next call, which returns the bytes at hand without
+			// waiting for the server to send more
+			if (mode == CONTENT_LENGTH && remaining == 0)
+			{
+				release(keepAlive);
+			}
+			return n;
+		}
+		catch (IOException e)
+		{
+			release(false);
+			throw e;
+		}
+	}
+
+	public int available() throws IOException
+	{
+		return released ? 0 : (int) Math.min(in.available(), remaining);
+	}
+
+	public void close() throws IOException
+	{
+		if (!released && mode == CHUNKED && remaining == 0 && !lastChunk && in.available() > 0)
+		{
+			// the data has been read and the server has already sent what follows it, which is
+			// usually the last chunk, so the connection can still go back to the pool
+			try
+			{
+				if (atEnd())
+				{
+					release(keepAlive);
+				}
+			}
+			catch (IOException e)
+			{
+				// the connection is closed below
+			}
+		}
+		release(false);
+	}
+
+	/**
+	 * Moves to the next chunk if the current one is exhausted, which waits for the chunk header.
+	 * Releases nothing; the caller does once the last chunk has been seen.
+	 * @return 		True if the whole body has been read
+	 */
+	private boolean atEnd() throws IOException
+	{
+		if (mode != CHUNKED)
+		{
+			return remaining == 0;
+		}
+		if (remaining == 0 && !lastChunk)
+		{
+			nextChunk();
+		}
+		return lastChunk;
+	}
+
+	private void nextChunk() throws IOException
+	{
+		String line = conn.readLine();
+		if (line.length() == 0)
+		{
+			// CRLF that terminates the previous chunk's data
+			line = conn.readLine();
+		}
+
+		int ext = line.indexOf(';');
+		String size = (ext >= 0 ? line.substring(0, ext) : line).trim();
+		try
+		{
+			remaining = Long.parseLong(size, 16);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IOException("Bad chunk size '" + size + "' from " + conn.route);
+		}
+
+		if (remaining == 0)
+		{
+			lastChunk = true;
+			// skip trailers up to the empty line that ends the message
+			while (conn.readLine().length() > 0)
+			{
+				continue;
+			}
+		}
+	}
+
+	private void release(boolean reusable)
+	{
+		if (!released)
+		{
+			released = true;
+			pool.release(conn, reusable);
+		}
+	}
+}
@@ -19,25 +19,30 @@
 
 package com.appdynamics.httprequest;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
-import java.net.Authenticator;
-import java.net.CookieHandler;
-import java.net.CookieManager;
-import java.net.CookiePolicy;
 import java.net.HttpURLConnection;
-import java.net.PasswordAuthentication;
 import java.net.ProtocolException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
@@ -46,11 +51,52 @@ import org.apache.http.impl.client.DefaultHttpClient;
 
 public class HTTPRequestPoster
 {
+	/**
+	 * Most users whose session cookies are kept. The cookies of the user who made a request the longest
+	 * time ago are dropped first, and that user logs in again on the next request.
+	 */
+	static final int MAX_SESSIONS = 64;
+
+	/**
+	 * Session cookies by a digest of the credentials, so that requests with authorization log in once per
+	 * session and a session is only used with the credentials that started it. Keys are salted digests
+	 * rather than the encoded credentials, so that the map does not keep passwords for the life of the JVM.
+	 */
+	private static final Map<String, SessionCookies> SESSIONS = Collections.synchronizedMap(
+			new LinkedHashMap<String, SessionCookies>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, SessionCookies> eldest)
+				{
+					return size() > MAX_SESSIONS;
+				}
+			});
+	private static final byte[] SESSION_SALT = newSalt();
+
+	private static volatile int connectTimeout = PooledHTTPTransport.DEFAULT_CONNECT_TIMEOUT;
+	private static volatile int readTimeout = PooledHTTPTransport.DEFAULT_READ_TIMEOUT;
+
+	/**
+	 * Sets the timeouts of the GET requests, so that a controller that does not answer fails the
+	 * request instead of blocking the calling thread. Defaults to the timeouts of PooledHTTPTransport.
+	 * @param connectTimeout
+	 *			- (Milliseconds) Longest wait for the connection to be established, 0 for no limit
+	 * @param readTimeout
+	 *			- (Milliseconds) Longest wait for data from the server, 0 for no limit
+	 */
+	public static void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		HTTPRequestPoster.connectTimeout = connectTimeout;
+		HTTPRequestPoster.readTimeout = readTimeout;
+	}
+
 	/**
 	 * Sends an HTTP GET request to a url
 	 * 
 	 * @param endpoint
-	 *			- The URL of the server. (Example:
+	 *			- The URL of the server, http:// or https://. (Example:
 	 *			" http://www.yahoo.com/search")
 	 * @param requestParameters
 	 *			- all the request parameters (Example:
@@ -61,30 +107,15 @@ public class HTTPRequestPoster
 	public static String sendGetRequest(String endpoint, String requestParameters)
 	{
 		String result = null;
-		if (endpoint.startsWith("http://"))
+		if (isSupported(endpoint))
 		{
 			// Send a GET request to the servlet
 			try
 			{
-				// Send data
-				String urlStr = endpoint;
-				if (requestParameters != null && requestParameters.length() > 0)
-				{
-					urlStr += "?" + requestParameters;
-				}
-				URL url = new URL(urlStr);
-				URLConnection conn = url.openConnection();
+				URLConnection conn = openConnection(endpoint, requestParameters);
 
 				// Get the response
-				BufferedReader rd = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-				StringBuffer sb = new StringBuffer();
-				String line;
-				while ((line = rd.readLine()) != null)
-				{
-					sb.append(line);
-				}
-				rd.close();
-				result = sb.toString();
+				result = readText(openBody(conn), charset(conn.getContentType()));
 			}
 			catch (Exception e)
 			{
@@ -99,43 +130,15 @@ public class HTTPRequestPoster
 	{
 		String result = null;
 		
-		if (endpoint.startsWith("http://"))
+		if (isSupported(endpoint))
 		{
 			// Send a GET request to the servlet
 			try
 			{
-				// Send data
-				String urlStr = endpoint;
-				if (requestParameters != null && requestParameters.length() > 0)
-				{
-					urlStr += "?" + requestParameters;
-				}
-				
-				// Set default cookie manager
-				CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
-				
-				// Change Default Authentication
-				Authenticator.setDefault(new Authenticator()
-				{
-					@Override
-					protected PasswordAuthentication getPasswordAuthentication()
-					{
-						return new PasswordAuthentication(Login, Password.toCharArray());
-					}
-				});
-				
-				URLConnection conn = new URL(urlStr).openConnection();
+				URLConnection conn = openAuthorizedConnection(endpoint, requestParameters, Login, Password);
 				
 				// Get the response
-				BufferedReader rd = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-				StringBuffer sb = new StringBuffer();
-				String line;
-				while ((line = rd.readLine()) != null)
-				{
-					sb.append(line);
-				}
-				rd.close();
-				result = sb.toString();
+				result = readText(openBody(conn), charset(conn.getContentType()));
 			}
 			catch (Exception e)
 			{
@@ -145,6 +148,76 @@ public class HTTPRequestPoster
 		return result;
 	}
 
+	/**
+	 * Sends an HTTP GET request to a url and returns the response body as a stream, so that it can be
+	 * parsed while it is being received instead of being read into memory first
+	 * 
+	 * @param endpoint
+	 *			- The URL of the server
+	 * @param requestParameters
+	 *			- all the request parameters, without the question mark
+	 * @return - The response body, decompressed if the server compressed it. The caller must close it
+	 * @throws IOException if the request failed
+	 */
+	public static InputStream openGetRequest(String endpoint, String requestParameters) throws IOException
+	{
+		if (!isSupported(endpoint))
+		{
+			throw new IOException("Unsupported protocol: " + endpoint);
+		}
+		return openBody(openConnection(endpoint, requestParameters));
+	}
+
+	/**
+	 * Sends an HTTP GET request with authorization to a url and returns the response body as a stream
+	 * 
+	 * @return - The response body, decompressed if the server compressed it. The caller must close it
+	 * @throws IOException if the request failed
+	 * @see #openGetRequest(String, String)
+	 */
+	public static InputStream openGetRequestWithAuthorization(String endpoint, String requestParameters,
+			String Login, String Password) throws IOException
+	{
+		if (!isSupported(endpoint))
+		{
+			throw new IOException("Unsupported protocol: " + endpoint);
+		}
+		return openBody(openAuthorizedConnection(endpoint, requestParameters, Login, Password));
+	}
+
+	/**
+	 * Sends an HTTP GET request to a url on an executor, for example one from
+	 * VirtualThreads.newVirtualThreadPerTaskExecutor() to send each request on its own virtual thread
+	 * 
+	 * @param endpoint
+	 *			- The URL of the server
+	 * @param requestParameters
+	 *			- all the request parameters, without the question mark
+	 * @param executor
+	 *			- Executor the request is sent on
+	 * @return - Future completed with the response from the end point, null if the request failed
+	 */
+	public static CompletableFuture<String> sendGetRequestAsync(final String endpoint, final String requestParameters,
+			Executor executor)
+	{
+		return CompletableFuture.supplyAsync(() -> sendGetRequest(endpoint, requestParameters), executor);
+	}
+
+	/**
+	 * Sends an HTTP GET request with authorization to a url on an executor
+	 * 
+	 * @param executor
+	 *			- Executor the request is sent on
+	 * @return - Future completed with the response from the end point, null if the request failed
+	 * @see #sendGetRequestWithAuthorization(String, String, String, String)
+	 */
+	public static CompletableFuture<String> sendGetRequestWithAuthorizationAsync(final String endpoint,
+			final String requestParameters, final String Login, final String Password, Executor executor)
+	{
+		return CompletableFuture.supplyAsync(
+				() -> sendGetRequestWithAuthorization(endpoint, requestParameters, Login, Password), executor);
+	}
+
 	/**
 	 * Reads data from the data reader and posts it to a server via POST
 	 * request. data - The data you want to send endpoint - The server's address
@@ -266,6 +339,191 @@ public class HTTPRequestPoster
 		return resp;
 	}
 
+	/**
+	 * @return		True if the endpoint is an http:// or https:// URL
+	 */
+	static boolean isSupported(String endpoint)
+	{
+		return endpoint.startsWith("http://") || endpoint.startsWith("https://");
+	}
+
+	private static URLConnection openConnection(String endpoint, String requestParameters) throws IOException
+	{
+		String urlStr = endpoint;
+		if (requestParameters != null && requestParameters.length() > 0)
+		{
+			urlStr += "?" + requestParameters;
+		}
+
+		URLConnection conn = new URL(urlStr).openConnection();
+		conn.setConnectTimeout(connectTimeout);
+		conn.setReadTimeout(readTimeout);
+		conn.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+		return conn;
+	}
+
+	private static InputStream openBody(URLConnection conn) throws IOException
+	{
+		InputStream in = conn.getInputStream();
+		try
+		{
+			return ContentEncoding.decode(in, conn.getContentEncoding());
+		}
+		catch (IOException e)
+		{
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a connection that is authorized by the session cookie of the user, or by the credentials
+	 * if the user has no valid session yet, in which case the controller starts one. A request the
+	 * controller rejects because the session has expired is repeated once with the credentials.
+	 */
+	private static URLConnection openAuthorizedConnection(String endpoint, String requestParameters,
+			String Login, String Password) throws IOException
+	{
+		String credentials = PooledHTTPTransport.encodeCredentials(Login, Password);
+		SessionCookies cookies = getSessionCookies(credentials);
+
+		for (int attempt = 0; ; attempt++)
+		{
+			URLConnection conn = openConnection(endpoint, requestParameters);
+			URL url = conn.getURL();
+			boolean login = attempt > 0 || !cookies.hasSession(url);
+			if (login)
+			{
+				conn.setRequestProperty("Authorization", "Basic " + credentials);
+			}
+			String cookie = cookies.getCookieHeader(url);
+			if (cookie != null)
+			{
+				conn.setRequestProperty("Cookie", cookie);
+			}
+
+			if (!(conn instanceof HttpURLConnection))
+			{
+				return conn;
+			}
+			HttpURLConnection http = (HttpURLConnection) conn;
+			int status = http.getResponseCode();
+			for (Map.Entry<String, List<String>> header : http.getHeaderFields().entrySet())
+			{
+				if ("Set-Cookie".equalsIgnoreCase(header.getKey()))
+				{
+					cookies.store(url, header.getValue());
+				}
+			}
+
+			// The session has expired, log in again
+			if (status == HttpURLConnection.HTTP_UNAUTHORIZED && !login)
+			{
+				cookies.invalidate(url);
+				InputStream error = http.getErrorStream();
+				if (error != null)
+				{
+					readText(error, "ISO-8859-1");
+				}
+				continue;
+			}
+			return conn;
+		}
+	}
+
+	/**
+	 * Gets the session cookies of the user with the encoded credentials, creating them on first use
+	 */
+	static SessionCookies getSessionCookies(String credentials)
+	{
+		String key = sessionKey(credentials);
+		synchronized (SESSIONS)
+		{
+			SessionCookies cookies = SESSIONS.get(key);
+			if (cookies == null)
+			{
+				cookies = new SessionCookies();
+				SESSIONS.put(key, cookies);
+			}
+			return cookies;
+		}
+	}
+
+	/**
+	 * @return		Number of users whose session cookies are kept
+	 */
+	static int getSessionCount()
+	{
+		return SESSIONS.size();
+	}
+
+	/**
+	 * @return		Hex SHA-256 digest of the salt of this JVM and the encoded credentials
+	 */
+	private static String sessionKey(String credentials)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(SESSION_SALT);
+			return Hex.encodeHexString(digest.digest(credentials.getBytes("UTF-8")));
+		}
+		catch (GeneralSecurityException | UnsupportedEncodingException e)
+		{
+			// every Java platform has SHA-256 and UTF-8
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] newSalt()
+	{
+		byte[] salt = new byte[16];
+		new SecureRandom().nextBytes(salt);
+		return salt;
+	}
+
+	/**
+	 * Reads a whole response body as text, line breaks included, and closes it
+	 */
+	static String readText(InputStream body, String charset) throws IOException
+	{
+		Reader reader = new InputStreamReader(body, charset);
+		try
+		{
+			StringBuilder sb = new StringBuilder(8192);
+			char[] buf = new char[4096];
+			int read;
+			while ((read = reader.read(buf)) != -1)
+			{
+				sb.append(buf, 0, read);
+			}
+			return sb.toString();
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Gets the charset of a Content-Type header value
+	 * @return		The charset parameter, or UTF-8 if there is none
+	 */
+	static String charset(String contentType)
+	{
+		if (contentType != null)
+		{
+			int idx = contentType.toLowerCase().indexOf("charset=");
+			if (idx >= 0)
+			{
+				String charset = contentType.substring(idx + 8).trim();
+				int end = charset.indexOf(';');
+				return (end >= 0 ? charset.substring(0, end) : charset).replace("\"", "").trim();
+			}
+		}
+		return "UTF-8";
+	}
+
 	/**
 	 * Pipes everything from the reader to the writer via a buffer
 	 */
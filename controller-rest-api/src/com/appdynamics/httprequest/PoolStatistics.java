@@ -0,0 +1,144 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+/**
+ * Point-in-time snapshot of the connection pool owned by a {@link PooledHTTPTransport}.
+ *
+ * leased		= Connections currently executing a request
+ * idle			= Open keep-alive connections waiting to be reused
+ * pending		= Requests waiting for a connection to become available
+ * max			= Maximum number of connections the pool will open
+ * created		= Connections opened since the transport was created
+ * evicted		= Idle or expired connections closed by the transport
+ * requests		= Requests sent since the transport was created
+ * logins		= Requests that carried the credentials, because there was no valid session cookie yet
+ * retries		= Requests repeated after a failure, following a backoff delay
+ * timeouts		= Connects, reads and waits for a connection that timed out or ran past their deadline
+ * received		= Response body bytes received, as sent by the server before decompression
+ * handshakes	= TLS handshakes made to open HTTPS connections
+ * resumed		= Handshakes that resumed an earlier TLS session instead of negotiating a new one
+ */
+public class PoolStatistics
+{
+	private final int leased;
+	private final int idle;
+	private final int pending;
+	private final int max;
+	private final long created;
+	private final long evicted;
+	private final long requests;
+	private final long logins;
+	private final long retries;
+	private final long timeouts;
+	private final long received;
+	private final long handshakes;
+	private final long resumed;
+
+	public PoolStatistics(int leased, int idle, int pending, int max, long created, long evicted, long requests,
+			long logins, long retries, long timeouts, long received, long handshakes, long resumed)
+	{
+		this.leased = leased;
+		this.idle = idle;
+		this.pending = pending;
+		this.max = max;
+		this.created = created;
+		this.evicted = evicted;
+		this.requests = requests;
+		this.logins = logins;
+		this.retries = retries;
+		this.timeouts = timeouts;
+		this.received = received;
+		this.handshakes = handshakes;
+		this.resumed = resumed;
+	}
+
+	public int getLeased()
+	{
+		return leased;
+	}
+
+	public int getIdle()
+	{
+		return idle;
+	}
+
+	public int getPending()
+	{
+		return pending;
+	}
+
+	public int getMax()
+	{
+		return max;
+	}
+
+	public long getCreated()
+	{
+		return created;
+	}
+
+	public long getEvicted()
+	{
+		return evicted;
+	}
+
+	public long getRequests()
+	{
+		return requests;
+	}
+
+	public long getLogins()
+	{
+		return logins;
+	}
+
+	public long getRetries()
+	{
+		return retries;
+	}
+
+	public long getTimeouts()
+	{
+		return timeouts;
+	}
+
+	public long getReceived()
+	{
+		return received;
+	}
+
+	public long getHandshakes()
+	{
+		return handshakes;
+	}
+
+	public long getResumed()
+	{
+		return resumed;
+	}
+
+	public String toString()
+	{
+		return "[leased: " + leased + "; idle: " + idle + "; pending: " + pending + "; max: " + max
+				+ "; created: " + created + "; evicted: " + evicted + "; requests: " + requests
+				+ "; logins: " + logins + "; retries: " + retries + "; timeouts: " + timeouts + "; received: " + received + "; handshakes: " + handshakes + "; resumed: " + resumed + "]";
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * A keep-alive socket to a controller host that is leased from and returned to a {@link ConnectionPool}.
+ *
+ * Every read from the socket is bounded by the read timeout and by the deadline of the request the
+ * connection is leased for, so a controller that stops answering fails the request instead of blocking
+ * its thread forever.
+ */
+class PooledConnection
+{
+	final String route;
+	final InputStream in;
+	final OutputStream out;
+
+	private final Socket socket;
+	private long lastUsed;
+	private int useCount;
+	private long received;
+	private int readTimeout;
+	private long deadline;
+	private int soTimeout = -1;
+	private boolean timedOut;
+
+	PooledConnection(String route, Socket socket) throws IOException
+	{
+		this.route = route;
+		this.socket = socket;
+		this.in = new BufferedInputStream(new SocketInputStream(socket.getInputStream()), 8192);
+		this.out = new BufferedOutputStream(socket.getOutputStream(), 1024);
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return true if this connection already served a request and may have been closed by the server meanwhile
+	 */
+	boolean isReused()
+	{
+		return useCount > 1;
+	}
+
+	/**
+	 * @param 	readTimeout		(Milliseconds) Longest wait for data from the server, 0 for no limit
+	 * @param 	deadline		Time by which the request has to be completed, 0 for none
+	 */
+	void markLeased(int readTimeout, long deadline)
+	{
+		useCount++;
+		this.readTimeout = readTimeout;
+		this.deadline = deadline;
+	}
+
+	void markIdle(long now)
+	{
+		lastUsed = now;
+	}
+
+	long getLastUsed()
+	{
+		return lastUsed;
+	}
+
+	/**
+	 * Counts response body bytes read from the socket while the connection is leased
+	 */
+	void addReceived(long bytes)
+	{
+		received += bytes;
+	}
+
+	/**
+	 * @return		The bytes counted since the previous call
+	 */
+	long takeReceived()
+	{
+		long bytes = received;
+		received = 0;
+		return bytes;
+	}
+
+	/**
+	 * @return		True if a read timed out since the previous call
+	 */
+	boolean takeTimedOut()
+	{
+		boolean result = timedOut;
+		timedOut = false;
+		return result;
+	}
+
+	boolean isOpen()
+	{
+		return !socket.isClosed() && !socket.isInputShutdown() && !socket.isOutputShutdown();
+	}
+
+	void close()
+	{
+		try
+		{
+			socket.close();
+		}
+		catch (IOException e)
+		{
+			// nothing left to release
+		}
+	}
+
+	/**
+	 * Reads a CRLF (or LF) terminated line of an HTTP response head
+	 * @return			The line without its terminator
+	 * @throws 			IOException if the stream ends before a terminator
+	 */
+	String readLine() throws IOException
+	{
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int c;
+		while ((c = in.read()) != '\n')
+		{
+			if (c == -1)
+			{
+				throw new EOFException("Connection closed by " + route);
+			}
+			if (c != '\r')
+			{
+				line.write(c);
+			}
+		}
+		return line.toString("ISO-8859-1");
+	}
+
+	/**
+	 * Applies the read timeout and the deadline to each read from the socket
+	 */
+	private class SocketInputStream extends FilterInputStream
+	{
+		SocketInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		public int read() throws IOException
+		{
+			try
+			{
+				applyTimeout();
+				return in.read();
+			}
+			catch (SocketTimeoutException e)
+			{
+				timedOut = true;
+				throw e;
+			}
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			try
+			{
+				applyTimeout();
+				return in.read(b, off, len);
+			}
+			catch (SocketTimeoutException e)
+			{
+				timedOut = true;
+				throw e;
+			}
+		}
+
+		private void applyTimeout() throws IOException
+		{
+			int timeout = readTimeout;
+			if (deadline > 0)
+			{
+				long left = deadline - System.currentTimeMillis();
+				if (left <= 0)
+				{
+					throw new SocketTimeoutException("Deadline exceeded while reading from " + route);
+				}
+				if (timeout == 0 || left < timeout)
+				{
+					timeout = (int) Math.min(left, Integer.MAX_VALUE);
+				}
+			}
+			if (timeout != soTimeout)
+			{
+				socket.setSoTimeout(timeout);
+				soTimeout = timeout;
+			}
+		}
+	}
+}
@@ -0,0 +1,679 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Reusable HTTP/1.1 transport for controller requests.
+ *
+ * Unlike {@link HTTPRequestPoster#sendGetRequestWithAuthorization}, which opens a new connection
+ * for every call, a transport keeps a bounded pool of keep-alive connections per controller host,
+ * so a request costs a single round trip on an already open connection.
+ *
+ * The first request to a controller sends the Basic authorization header preemptively, which logs
+ * the user in. Later requests send the session cookie the controller issued instead, so that the
+ * controller does not authenticate every request again. When the session expires the request is
+ * repeated once with credentials, which starts a new session.
+ * Responses are requested gzip or deflate compressed and decompressed while they are parsed.
+ *
+ * Both http:// and https:// controllers are supported. HTTPS connections are kept alive like plain
+ * ones, and new connections to a host resume its cached TLS session, so most requests pay for no
+ * handshake and the others for an abbreviated one.
+ *
+ * Redirects with status 301, 302, 303, 307 or 308 are followed, for up to MAX_REDIRECTS hops, as
+ * HttpURLConnection did, for example when a controller moves from http:// to https://. The request is
+ * repeated as a GET to the new location. The credentials are only sent to the host of the original
+ * request, and never after a redirect from https:// to http://.
+ *
+ * Connects and reads are bounded by timeouts, and a request can be given an overall deadline that
+ * also covers reading its body. A request that fails before its body is handed over, through an I/O
+ * error or a 408, 429, 502, 503 or 504 response, is repeated after an exponentially growing delay with
+ * random jitter, as all requests are idempotent GETs. Failures are thrown as IOException, only the
+ * String returning sendGetRequest swallows them and returns null.
+ *
+ * A transport is safe to share between threads and should be shut down when no longer needed.
+ */
+public class PooledHTTPTransport
+{
+	public static final int DEFAULT_MAX_PER_HOST = 10;
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	public static final int DEFAULT_READ_TIMEOUT = 60000;
+	public static final int DEFAULT_MAX_RETRIES = 2;
+	public static final long DEFAULT_INITIAL_BACKOFF = 250;
+	public static final long DEFAULT_MAX_BACKOFF = 8000;
+	public static final int MAX_REDIRECTS = 20;
+
+	private final ConnectionPool pool;
+	private final String authorization;
+	private final SessionCookies cookies = new SessionCookies();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong logins = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+
+	private volatile long deadline;
+	private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+	private volatile long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+	private volatile long maxBackoff = DEFAULT_MAX_BACKOFF;
+
+	/**
+	 * Creates a transport with the default pool limits
+	 * @param 	username	Username of the user making the requests
+	 * @param 	password	Password of the user making the requests
+	 */
+	public PooledHTTPTransport(String username, String password)
+	{
+		this(username, password, DEFAULT_MAX_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Creates a transport
+	 * @param 	username	Username of the user making the requests
+	 * @param 	password	Password of the user making the requests
+	 * @param 	maxPerHost	Maximum number of open connections to a single controller host
+	 * @param 	idleTimeout	(Milliseconds) Time after which an unused keep-alive connection is closed
+	 */
+	public PooledHTTPTransport(String username, String password, int maxPerHost, long idleTimeout)
+	{
+		this(username, password, maxPerHost, idleTimeout, (SSLSocketFactory) SSLSocketFactory.getDefault());
+	}
+
+	/**
+	 * Creates a transport with its own TLS settings, for example to trust the certificate of an
+	 * on-premises controller that is not signed by a public certificate authority
+	 * @param 	username			Username of the user making the requests
+	 * @param 	password			Password of the user making the requests
+	 * @param 	maxPerHost			Maximum number of open connections to a single controller host
+	 * @param 	idleTimeout			(Milliseconds) Time after which an unused keep-alive connection is closed
+	 * @param 	sslSocketFactory	Factory of the HTTPS connections, from SSLContext.getSocketFactory()
+	 */
+	public PooledHTTPTransport(String username, String password, int maxPerHost, long idleTimeout,
+			SSLSocketFactory sslSocketFactory)
+	{
+		this.pool = new ConnectionPool(maxPerHost, idleTimeout, sslSocketFactory);
+		this.pool.setTimeouts(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+		this.authorization = "Basic " + encodeCredentials(username, password);
+	}
+
+	/**
+	 * Sets the timeouts of the connections. Defaults to DEFAULT_CONNECT_TIMEOUT and DEFAULT_READ_TIMEOUT.
+	 * @param 	connectTimeout	(Milliseconds) Longest wait for a connection and its TLS handshake, 0 for no limit
+	 * @param 	readTimeout		(Milliseconds) Longest wait for data from the controller, 0 for no limit
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		pool.setTimeouts(connectTimeout, readTimeout);
+	}
+
+	/**
+	 * Sets the time a request may take overall: waiting for a connection, all its attempts and the
+	 * delays between them, and reading the response body. No deadline by default.
+	 * @param 	deadline	(Milliseconds) Time from the start of a request by which it has to be completed, 0 for none
+	 */
+	public void setDeadline(long deadline)
+	{
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Sets how failed requests are repeated. The n-th retry waits between half and all of
+	 * min(maxBackoff, initialBackoff * 2^n) milliseconds, so that clients which failed together do not
+	 * retry together. Defaults to DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF and DEFAULT_MAX_BACKOFF.
+	 * @param 	maxRetries		Number of times a request is repeated at most, 0 to never retry
+	 * @param 	initialBackoff	(Milliseconds) Delay before the first retry
+	 * @param 	maxBackoff		(Milliseconds) Longest delay between two attempts
+	 */
+	public void setRetries(int maxRetries, long initialBackoff, long maxBackoff)
+	{
+		this.maxRetries = maxRetries;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Sends an HTTP GET request to a url over a pooled connection
+	 *
+	 * @param endpoint
+	 *			- The URL of the server, http:// or https://. (Example:
+	 *			" http://www.yahoo.com/search")
+	 * @param requestParameters
+	 *			- all the request parameters (Example:
+	 *			"param1=val1&param2=val2"). Note: This method will add the
+	 *			question mark (?) to the request - DO NOT add it yourself
+	 * @return - The response from the end point, or null if the request failed
+	 */
+	public String sendGetRequest(String endpoint, String requestParameters)
+	{
+		String result = null;
+		if (HTTPRequestPoster.isSupported(endpoint))
+		{
+			try
+			{
+				Response response = get(endpoint, requestParameters);
+				result = HTTPRequestPoster.readText(response.body, response.charset());
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sends an HTTP GET request over a pooled connection and hands the response body to a handler,
+	 * which parses it while it is being received. Whatever the handler leaves unread is skipped, so the
+	 * connection goes back to the pool once the handler returns.
+	 *
+	 * @param endpoint
+	 *			- The URL of the server
+	 * @param requestParameters
+	 *			- all the request parameters, without the question mark
+	 * @param handler
+	 *			- Consumes the response body
+	 * @return - The result of the handler
+	 * @throws IOException if the request failed or the server did not answer with a 2xx status
+	 * @throws E if the handler failed to parse the body
+	 */
+	public <T, E extends Exception> T sendGetRequest(String endpoint, String requestParameters,
+			ResponseHandler<T, E> handler) throws IOException, E
+	{
+		Response response = get(endpoint, requestParameters);
+		boolean completed = false;
+		try
+		{
+			T result = handler.handleResponse(response.body, response.charset());
+			drain(response.body);
+			completed = true;
+			return result;
+		}
+		finally
+		{
+			if (!completed)
+			{
+				response.body.close();
+			}
+		}
+	}
+
+	/**
+	 * Sends an HTTP GET request over a pooled connection and returns the response body as a stream,
+	 * so that it can be parsed while it is being received. The connection goes back to the pool once
+	 * the body has been read to the end; closing the stream earlier closes the connection.
+	 *
+	 * @param endpoint
+	 *			- The URL of the server
+	 * @param requestParameters
+	 *			- all the request parameters, without the question mark
+	 * @return - The response body, decompressed if the server compressed it
+	 * @throws IOException if the request failed or the server did not answer with a 2xx status
+	 */
+	public InputStream openGetStream(String endpoint, String requestParameters) throws IOException
+	{
+		return get(endpoint, requestParameters).body;
+	}
+
+	/**
+	 * Sends an HTTP GET request over a pooled connection and returns the response body as a channel,
+	 * for parsers that read into ByteBuffers
+	 *
+	 * @return - Channel over the response body, decompressed if the server compressed it
+	 * @throws IOException if the request failed or the server did not answer with a 2xx status
+	 * @see #openGetStream(String, String)
+	 */
+	public ReadableByteChannel openGetChannel(String endpoint, String requestParameters) throws IOException
+	{
+		return Channels.newChannel(openGetStream(endpoint, requestParameters));
+	}
+
+	/**
+	 * Sends an HTTP GET request over a pooled connection and returns the response body as a stream,
+	 * so that it can be parsed while it is being received. The connection goes back to the pool once
+	 * the body has been read to the end; closing the reader earlier closes the connection.
+	 *
+	 * @param endpoint
+	 *			- The URL of the server
+	 * @param requestParameters
+	 *			- all the request parameters, without the question mark
+	 * @return - Reader over the response body, decoded with the charset of the response (UTF-8 by default)
+	 * @throws IOException if the request failed or the server did not answer with a 2xx status
+	 */
+	public Reader openGetRequest(String endpoint, String requestParameters) throws IOException
+	{
+		Response response = get(endpoint, requestParameters);
+		try
+		{
+			return new InputStreamReader(response.body, response.charset());
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			response.body.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets a snapshot of the connection pool usage
+	 * @return		PoolStatistics - Pool usage counters
+	 */
+	public PoolStatistics getPoolStatistics()
+	{
+		return pool.getStatistics(requests.get(), logins.get(), retries.get());
+	}
+
+	/**
+	 * Closes all pooled connections. The transport cannot be used afterwards.
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	private Response get(String endpoint, String requestParameters) throws IOException
+	{
+		if (!HTTPRequestPoster.isSupported(endpoint))
+		{
+			throw new IOException("Unsupported protocol: " + endpoint);
+		}
+
+		String urlStr = endpoint;
+		if (requestParameters != null && requestParameters.length() > 0)
+		{
+			urlStr += "?" + requestParameters;
+		}
+		return execute(new URL(escapeIllegalCharacters(urlStr)));
+	}
+
+	/**
+	 * Sends a GET request, following redirects, and reads the response head. The body is left on the
+	 * connection and decoded while it is read.
+	 */
+	private Response execute(URL url) throws IOException
+	{
+		long deadline = this.deadline > 0 ? System.currentTimeMillis() + this.deadline : 0;
+		boolean credentials = true;
+		for (int redirects = 0; ; redirects++)
+		{
+			Response response = execute(url, credentials, deadline);
+			if (!isRedirect(response.status))
+			{
+				try
+				{
+					response.body = ContentEncoding.decode(response.body, response.header("content-encoding"));
+				}
+				catch (IOException e)
+				{
+					response.body.close();
+					throw e;
+				}
+				return response;
+			}
+
+			drain(response.body);
+			String location = response.header("location");
+			if (location.length() == 0)
+			{
+				throw new IOException("Server returned HTTP response code: " + response.status
+						+ " without a Location for URL: " + url);
+			}
+			if (redirects >= MAX_REDIRECTS)
+			{
+				throw new IOException("Server redirected too many times (" + MAX_REDIRECTS + ") for URL: " + url);
+			}
+
+			URL next = new URL(escapeIllegalCharacters(new URL(url, location).toString()));
+			if (!HTTPRequestPoster.isSupported(next.toString()))
+			{
+				throw new IOException("Unsupported protocol in redirect from " + url + " to " + next);
+			}
+			// credentials only go to the host they were given for, and not in the clear after leaving https
+			credentials = credentials && next.getHost().equalsIgnoreCase(url.getHost())
+					&& !("https".equals(url.getProtocol()) && "http".equals(next.getProtocol()));
+			url = next;
+		}
+	}
+
+	/**
+	 * Sends a GET request and reads the response head, repeating it after failures. The body is left on
+	 * the connection.
+	 * @param 	credentials		False to never send the Authorization header to this url
+	 * @return					The response, if its status is below 300 or a redirect
+	 */
+	private Response execute(URL url, boolean credentials, long deadline) throws IOException
+	{
+		String host = url.getHost();
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		String target = url.getFile().length() == 0 ? "/" : url.getFile();
+		String hostHeader = url.getPort() == -1 ? host : host + ":" + port;
+		boolean secure = "https".equals(url.getProtocol());
+
+		boolean reconnected = false;
+		boolean reauthenticated = false;
+		for (int retry = 0; ; )
+		{
+			boolean login = credentials && !cookies.hasSession(url);
+			PooledConnection conn = null;
+			Response response = null;
+			IOException failure = null;
+			try
+			{
+				conn = pool.lease(secure, host, port, deadline);
+				requests.incrementAndGet();
+				if (login)
+				{
+					logins.incrementAndGet();
+				}
+				writeRequest(conn, target, hostHeader, login, cookies.getCookieHeader(url));
+				response = readResponseHead(conn);
+			}
+			catch (IOException e)
+			{
+				if (conn != null)
+				{
+					pool.release(conn, false);
+				}
+				if (isInterruption(e))
+				{
+					throw e;
+				}
+
+				// A kept-alive connection may have been closed by the server while it was idle,
+				// the request never reached the server so it is safe to repeat it at once
+				if (conn != null && conn.isReused() && !reconnected && !(e instanceof SocketTimeoutException))
+				{
+					reconnected = true;
+					continue;
+				}
+				failure = e;
+			}
+
+			if (response != null)
+			{
+				cookies.store(url, response.setCookies);
+
+				// The session has expired, log in again
+				if (response.status == 401 && credentials && !login && !reauthenticated)
+				{
+					drain(response.body);
+					cookies.invalidate(url);
+					reauthenticated = true;
+					continue;
+				}
+
+				if (response.status < 300 || isRedirect(response.status))
+				{
+					return response;
+				}
+
+				drain(response.body);
+				failure = new IOException("Server returned HTTP response code: " + response.status + " for URL: " + url);
+				if (!isRetryable(response.status))
+				{
+					throw failure;
+				}
+			}
+
+			backoff(retry, deadline, failure);
+			retry++;
+			retries.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Waits before the next attempt of a failed request
+	 * @param 	retry		Number of retries made so far
+	 * @param 	failure		Failure of the last attempt, thrown if the request is not retried
+	 */
+	private void backoff(int retry, long deadline, IOException failure) throws IOException
+	{
+		if (retry >= maxRetries)
+		{
+			throw failure;
+		}
+
+		long delay = Math.min(maxBackoff, initialBackoff << Math.min(retry, 30));
+		delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+		if (deadline > 0 && System.currentTimeMillis() + delay >= deadline)
+		{
+			throw failure;
+		}
+
+		try
+		{
+			Thread.sleep(delay);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			InterruptedIOException interrupted = new InterruptedIOException("Interrupted before retrying a request");
+			interrupted.initCause(failure);
+			throw interrupted;
+		}
+	}
+
+	/**
+	 * @return		True for redirects that may be followed with another GET
+	 */
+	private static boolean isRedirect(int status)
+	{
+		return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+	}
+
+	/**
+	 * @return		True for responses that report a temporary condition: request timeout, rate limiting,
+	 * 				or an unavailable controller behind a proxy or load balancer
+	 */
+	private static boolean isRetryable(int status)
+	{
+		return status == 408 || status == 429 || status == 502 || status == 503 || status == 504;
+	}
+
+	/**
+	 * @return		True if the thread was interrupted, as opposed to a timeout, which is also an InterruptedIOException
+	 */
+	private static boolean isInterruption(IOException e)
+	{
+		return e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException);
+	}
+
+	/**
+	 * @param 	login		True to send the credentials
+	 * @param 	cookie		Value of the Cookie header, or null
+	 */
+	private void writeRequest(PooledConnection conn, String target, String hostHeader, boolean login, String cookie)
+			throws IOException
+	{
+		StringBuilder head = new StringBuilder(256 + target.length());
+		head.append("GET ").append(target).append(" HTTP/1.1\r\n");
+		head.append("Host: ").append(hostHeader).append("\r\n");
+		if (login)
+		{
+			head.append("Authorization: ").append(authorization).append("\r\n");
+		}
+		if (cookie != null)
+		{
+			head.append("Cookie: ").append(cookie).append("\r\n");
+		}
+		head.append("Accept: application/json, */*\r\n");
+		head.append("Accept-Encoding: ").append(ContentEncoding.ACCEPT_ENCODING).append("\r\n");
+		head.append("\r\n");
+
+		OutputStream out = conn.out;
+		out.write(head.toString().getBytes("ISO-8859-1"));
+		out.flush();
+	}
+
+	private Response readResponseHead(PooledConnection conn) throws IOException
+	{
+		String statusLine = conn.readLine();
+		String[] parts = statusLine.split(" ", 3);
+		if (parts.length < 2 || !parts[0].startsWith("HTTP/"))
+		{
+			throw new IOException("Invalid HTTP response from " + conn.route + ": " + statusLine);
+		}
+
+		Response response = new Response();
+		try
+		{
+			response.status = Integer.parseInt(parts[1]);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IOException("Invalid HTTP response from " + conn.route + ": " + statusLine);
+		}
+
+		String line;
+		while ((line = conn.readLine()).length() > 0)
+		{
+			int colon = line.indexOf(':');
+			if (colon > 0)
+			{
+				String name = line.substring(0, colon).trim().toLowerCase();
+				String value = line.substring(colon + 1).trim();
+				if (name.equals("set-cookie"))
+				{
+					// not joined, the expiry date of a cookie contains a comma
+					response.setCookies.add(value);
+					continue;
+				}
+				String previous = response.headers.get(name);
+				response.headers.put(name, previous == null ? value : previous + ", " + value);
+			}
+		}
+
+		String connection = response.header("connection");
+		boolean keepAlive = parts[0].equals("HTTP/1.0")
+				? "keep-alive".equalsIgnoreCase(connection)
+				: !"close".equalsIgnoreCase(connection);
+
+		boolean chunked = response.header("transfer-encoding").toLowerCase().indexOf("chunked") >= 0;
+
+		long contentLength = -1;
+		if (response.status == 204 || response.status == 304)
+		{
+			contentLength = 0;
+		}
+		else if (response.header("content-length").length() > 0)
+		{
+			try
+			{
+				contentLength = Long.parseLong(response.header("content-length"));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException("Invalid Content-Length from " + conn.route);
+			}
+		}
+
+		response.body = new HTTPBodyInputStream(pool, conn, contentLength, chunked, keepAlive);
+		return response;
+	}
+
+	private static void drain(InputStream body) throws IOException
+	{
+		byte[] buf = new byte[4096];
+		while (body.read(buf) != -1)
+		{
+			continue;
+		}
+	}
+
+	static String encodeCredentials(String username, String password)
+	{
+		try
+		{
+			return new String(Base64.encodeBase64((username + ":" + password).getBytes("UTF-8")), "US-ASCII");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Percent-encodes the characters that may not appear in an HTTP request line, such as
+	 * the '|' separators in metric paths. Existing escapes are left untouched.
+	 */
+	static String escapeIllegalCharacters(String url) throws UnsupportedEncodingException
+	{
+		StringBuilder sb = new StringBuilder(url.length() + 16);
+		for (int i = 0; i < url.length(); i++)
+		{
+			char c = url.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| "-._~:/?#[]@!$&'()*+,;=%".indexOf(c) >= 0)
+			{
+				sb.append(c);
+			}
+			else
+			{
+				int end = Character.isHighSurrogate(c) && i + 1 < url.length() ? i + 2 : i + 1;
+				for (byte b : url.substring(i, end).getBytes("UTF-8"))
+				{
+					sb.append('%');
+					sb.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)));
+					sb.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+				}
+				i = end - 1;
+			}
+		}
+		return sb.toString();
+	}
+
+	private static class Response
+	{
+		int status;
+		final Map<String, String> headers = new HashMap<String, String>();
+		final List<String> setCookies = new ArrayList<String>(2);
+		InputStream body;
+
+		String header(String name)
+		{
+			String value = headers.get(name);
+			return value == null ? "" : value;
+		}
+
+		String charset()
+		{
+			return HTTPRequestPoster.charset(headers.get("content-type"));
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes the body of a response as it is being received, typically by running a streaming parser on it.
+ *
+ * E is the checked exception of the parser, such as JSONException, which is passed on to the caller as is.
+ *
+ * @see PooledHTTPTransport#sendGetRequest(String, String, ResponseHandler)
+ */
+public interface ResponseHandler<T, E extends Exception>
+{
+	/**
+	 * Reads a response body. The body does not have to be read to its end, nor closed.
+	 * @param 	body		The response body, decompressed if the server compressed it
+	 * @param 	charset		Charset of the response, UTF-8 unless the server specified another one
+	 * @return				The result of the request
+	 * @throws 	IOException	if reading the body failed
+	 * @throws 	E			if parsing the body failed
+	 */
+	T handleResponse(InputStream body, String charset) throws IOException, E;
+}
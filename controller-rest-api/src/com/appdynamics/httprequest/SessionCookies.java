@@ -0,0 +1,143 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cookies of one controller user, including the session cookie the controller issues once a request
+ * has been authenticated.
+ *
+ * While the session is valid, requests carry the session cookie instead of the credentials, so the
+ * controller neither challenges them nor authenticates the user again. When the session expires the
+ * controller answers 401, the session cookie is dropped and the request is repeated with credentials,
+ * which logs the user in again.
+ *
+ * The cookies are kept in a CookieManager of their own rather than the JVM-wide CookieHandler, so that
+ * the sessions of different users and transports do not mix. Instances are thread-safe.
+ */
+class SessionCookies
+{
+	static final String SESSION_COOKIE = "JSESSIONID";
+
+	private final CookieManager manager = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
+
+	/**
+	 * @return		True if a session cookie that has not expired is stored for the url
+	 */
+	boolean hasSession(URL url)
+	{
+		for (HttpCookie cookie : manager.getCookieStore().get(toURI(url)))
+		{
+			if (SESSION_COOKIE.equalsIgnoreCase(cookie.getName()) && !cookie.hasExpired())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return		Value of the Cookie header to send to the url, or null if no cookie applies
+	 */
+	String getCookieHeader(URL url)
+	{
+		try
+		{
+			Map<String, List<String>> headers = manager.get(toURI(url), Collections.<String, List<String>>emptyMap());
+			List<String> cookies = headers.get("Cookie");
+			if (cookies == null || cookies.isEmpty())
+			{
+				return null;
+			}
+
+			StringBuilder sb = new StringBuilder(64);
+			for (String cookie : cookies)
+			{
+				if (sb.length() > 0)
+				{
+					sb.append("; ");
+				}
+				sb.append(cookie);
+			}
+			return sb.toString();
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the cookies of a response
+	 * @param 	setCookies		Values of the Set-Cookie headers of the response
+	 */
+	void store(URL url, List<String> setCookies)
+	{
+		if (setCookies == null || setCookies.isEmpty())
+		{
+			return;
+		}
+		try
+		{
+			manager.put(toURI(url), Collections.singletonMap("Set-Cookie", setCookies));
+		}
+		catch (IOException e)
+		{
+			// malformed cookies are ignored, the next request authenticates again
+		}
+	}
+
+	/**
+	 * Drops the session cookie of the url after the controller rejected it
+	 */
+	void invalidate(URL url)
+	{
+		URI uri = toURI(url);
+		for (HttpCookie cookie : manager.getCookieStore().get(uri))
+		{
+			if (SESSION_COOKIE.equalsIgnoreCase(cookie.getName()))
+			{
+				manager.getCookieStore().remove(uri, cookie);
+			}
+		}
+	}
+
+	private static URI toURI(URL url)
+	{
+		try
+		{
+			return new URI(url.getProtocol(), null, url.getHost(), url.getPort(), url.getPath(), null, null);
+		}
+		catch (URISyntaxException e)
+		{
+			throw new IllegalArgumentException(e);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual thread executor of Java 21 and later, while the toolkit itself is built for Java 8.
+ *
+ * A virtual thread blocked on a controller request costs a few hundred bytes instead of a platform
+ * thread, so blocking queries can be issued by the thousands. Concurrency towards one controller is
+ * still bounded by the connection limit of the transport.
+ */
+public class VirtualThreads
+{
+	private static final Method NEW_EXECUTOR = findExecutorFactory();
+
+	/**
+	 * @return		True if the running JVM supports virtual threads
+	 */
+	public static boolean isSupported()
+	{
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * Creates an executor that starts a new virtual thread for each task
+	 * @return		Executors.newVirtualThreadPerTaskExecutor() of the running JVM
+	 * @throws 		UnsupportedOperationException if the JVM is older than Java 21
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor()
+	{
+		if (NEW_EXECUTOR == null)
+		{
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running "
+					+ System.getProperty("java.version"));
+		}
+		try
+		{
+			return (ExecutorService) NEW_EXECUTOR.invoke(null);
+		}
+		catch (Exception e)
+		{
+			throw new UnsupportedOperationException("Could not create a virtual thread executor", e);
+		}
+	}
+
+	/**
+	 * Creates a virtual thread executor if the JVM supports them, otherwise a cached pool of platform threads
+	 * @return		An executor that starts a thread per task without a fixed bound
+	 */
+	public static ExecutorService newThreadPerTaskExecutor()
+	{
+		return isSupported() ? newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+	}
+
+	private static Method findExecutorFactory()
+	{
+		try
+		{
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.JSON;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.appdynamics.test.Check;
+
+/**
+ * Compare JSONObject(String) with JSONObject.lazy(String) on controller
+ * event payloads: the time and memory it takes to read the id, type and
+ * severity of every event, and to read every event completely. Each run is
+ * repeated and the fastest is reported, with the bytes the reading thread
+ * allocated in it.
+ * <p>
+ * Arguments: number of events (2000), affected entities per event (50),
+ * runs (10).
+ */
+public class LazyJSONObjectBenchmark {
+
+    /**
+     * Keeps the results alive so that the reads cannot be optimized away.
+     */
+    static volatile int sink;
+
+    private interface Reader {
+        Object read(String text) throws JSONException;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int entities = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        String[] texts = new String[events];
+        long chars = 0;
+        for (int i = 0; i < events; i += 1) {
+            texts[i] = event(i, entities);
+            chars += texts[i].length();
+        }
+        check(texts);
+        System.out.println("LazyJSONObjectBenchmark: " + events + " events of "
+                + chars / events + " characters, " + entities
+                + " affected entities each, best of " + runs + " runs");
+
+        Reader eagerFew = new Reader() {
+            public Object read(String text) throws JSONException {
+                return few(new JSONObject(text));
+            }
+        };
+        Reader lazyFew = new Reader() {
+            public Object read(String text) throws JSONException {
+                return few(JSONObject.lazy(text));
+            }
+        };
+        Reader eagerAll = new Reader() {
+            public Object read(String text) throws JSONException {
+                return new JSONObject(text).toString();
+            }
+        };
+        Reader lazyAll = new Reader() {
+            public Object read(String text) throws JSONException {
+                return JSONObject.lazy(text).toString();
+            }
+        };
+        run("id, type and severity, eager", eagerFew, texts, runs);
+        run("id, type and severity, lazy ", lazyFew, texts, runs);
+        run("every member, eager        ", eagerAll, texts, runs);
+        run("every member, lazy         ", lazyAll, texts, runs);
+    }
+
+
+    /**
+     * Check that both kinds of object read the same values and print the
+     * same text.
+     */
+    private static void check(String[] texts) throws JSONException {
+        for (int i = 0; i < texts.length; i += 1) {
+            JSONObject eager = new JSONObject(texts[i]);
+            Check.equal(few(eager), few(JSONObject.lazy(texts[i])),
+                    "Members read from event " + i);
+            Check.equal(eager.toString(), JSONObject.lazy(texts[i]).toString(),
+                    "Text of event " + i);
+        }
+    }
+
+
+    private static String few(JSONObject event) throws JSONException {
+        return event.getLong("id") + " " + event.getString("type") + " "
+                + event.getString("severity");
+    }
+
+
+    private static void run(String name, Reader reader, String[] texts,
+            int runs) throws JSONException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation =
+                threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long id = Thread.currentThread().getId();
+
+        long best = Long.MAX_VALUE;
+        long bytes = 0;
+        int results = 0;
+        for (int run = 0; run < runs; run += 1) {
+            long allocated = allocation == null ? 0
+                    : allocation.getThreadAllocatedBytes(id);
+            long start = System.nanoTime();
+            for (int i = 0; i < texts.length; i += 1) {
+                results += reader.read(texts[i]).hashCode() & 1;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (elapsed < best) {
+                best = elapsed;
+                bytes = allocation == null ? -1
+                        : allocation.getThreadAllocatedBytes(id) - allocated;
+            }
+        }
+        System.out.println("  " + name + ": " + best / 100000 / 10.0 + " ms, "
+                + (bytes < 0 ? "allocation not measured"
+                        : bytes / 1024 + " KB allocated"));
+        sink = results;
+    }
+
+
+    /**
+     * Make the text of an event as the controller sends it.
+     */
+    private static String event(int i, int entities) {
+        StringBuilder text = new StringBuilder("{\"affectedEntities\":[");
+        for (int e = 0; e < entities; e += 1) {
+            if (e > 0) {
+                text.append(',');
+            }
+            text.append("{\"entityId\":").append(1000 + e)
+                .append(",\"entityType\":\"APPLICATION_COMPONENT_NODE\",\"name\":\"node-")
+                .append(e).append("\"}");
+        }
+        text.append("],\"archived\":false,\"deepLinkUrl\":\"http://controller:8090/controller/#location=APP_EVENT_VIEWER_MODAL&eventSummary=")
+            .append(i).append("\",\"eventTime\":").append(1380000000000L + i)
+            .append(",\"id\":").append(i)
+            .append(",\"markedAsRead\":false,\"markedAsResolved\":false,\"severity\":\"")
+            .append(i % 3 == 0 ? "ERROR" : "WARN")
+            .append("\",\"subType\":\"\",\"summary\":\"Slow transaction ").append(i)
+            .append(" on node-").append(i % 7)
+            .append("\",\"triggeredEntity\":{\"entityId\":").append(i % 7)
+            .append(",\"entityType\":\"BUSINESS_TRANSACTION\"},\"type\":\"")
+            .append(i % 2 == 0 ? "SLOW" : "STALL").append("\"}");
+        return text.toString();
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.appdynamics.TypeREST.ADMetric;
+import com.appdynamics.httprequest.PooledHTTPTransport;
+import com.appdynamics.httprequest.VirtualThreads;
+import com.appdynamics.test.Check;
+import com.appdynamics.test.SampleController;
+import com.appdynamics.test.StubController;
+
+/**
+ * Compares the executors the *Async queries can run on, against a stub controller that takes a while to
+ * answer each request: the default pool of RESTToolkit.DEFAULT_ASYNC_THREADS threads, a platform thread
+ * per query and, on Java 21 and later, a virtual thread per query. Reports the time to run all queries and
+ * the peak number of platform threads, which includes the threads of the stub, one per open connection.
+ * On older JVMs the virtual thread run is skipped and reported as such.
+ *
+ * Arguments: number of queries (2000), delay of each answer in milliseconds (20), connection limit (200).
+ */
+public class AsyncBenchmark
+{
+	private static final int APPLICATIONS = 8;
+
+	public static void main(String[] args) throws Exception
+	{
+		int queries = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		long delay = args.length > 1 ? Long.parseLong(args[1]) : 20;
+		int connections = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+		StubController stub = new StubController(new SampleController(APPLICATIONS, 2, 2, 2, 1, 0));
+		stub.setDelay(delay);
+		System.out.println("AsyncBenchmark: " + queries + " queries, " + delay + " ms per answer, " + connections
+				+ " connections, Java " + System.getProperty("java.version"));
+		try
+		{
+			run("default pool", null, stub, queries, connections);
+
+			ExecutorService platform = Executors.newCachedThreadPool();
+			try
+			{
+				run("platform thread per query", platform, stub, queries, connections);
+			}
+			finally
+			{
+				platform.shutdown();
+			}
+
+			if (VirtualThreads.isSupported())
+			{
+				ExecutorService virtual = VirtualThreads.newVirtualThreadPerTaskExecutor();
+				try
+				{
+					run("virtual thread per query", virtual, stub, queries, connections);
+				}
+				finally
+				{
+					virtual.shutdown();
+				}
+			}
+			else
+			{
+				System.out.println("  virtual thread per query: not run, Java "
+						+ System.getProperty("java.version") + " has no virtual threads (Java 21 or later)");
+			}
+		}
+		finally
+		{
+			stub.stop();
+		}
+	}
+
+	private static void run(String name, ExecutorService executor, StubController stub, int queries, int connections)
+			throws Exception
+	{
+		PooledHTTPTransport transport = new PooledHTTPTransport("user@customer1", "secret", connections,
+				PooledHTTPTransport.DEFAULT_IDLE_TIMEOUT);
+		RESTToolkit toolkit = new RESTToolkit("user@customer1", "secret", stub.getURL(), "", transport);
+		toolkit.setAsyncExecutor(executor);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		try
+		{
+			// warm up the code and the connections
+			query(toolkit, Math.min(queries, connections));
+
+			threads.resetPeakThreadCount();
+			stub.reset();
+			long start = System.nanoTime();
+			query(toolkit, queries);
+			long elapsed = (System.nanoTime() - start) / 1000000;
+
+			Check.equal(queries, stub.getRequests(), "Requests of " + name);
+			System.out.println("  " + name + ": " + elapsed + " ms, " + (queries * 1000L / Math.max(elapsed, 1))
+					+ " queries/s, peak platform threads " + threads.getPeakThreadCount() + ", "
+					+ toolkit.getPoolStatistics());
+		}
+		finally
+		{
+			toolkit.shutdown();
+		}
+	}
+
+	private static void query(RESTToolkit toolkit, int queries) throws Exception
+	{
+		List<CompletableFuture<ArrayList<ADMetric>>> results = new ArrayList<CompletableFuture<ArrayList<ADMetric>>>();
+		for (int q = 0; q < queries; q++)
+		{
+			results.add(toolkit.getARTForAppAsync(SampleController.appName(q % APPLICATIONS), 15, true));
+		}
+		for (int q = 0; q < queries; q++)
+		{
+			Check.equal((long) (q % APPLICATIONS), results.get(q).get().get(0).value, "Application of query " + q);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import com.appdynamics.TypeREST.ADEvent;
+import com.appdynamics.TypeREST.ADMetric;
+import com.appdynamics.TypeREST.ADTier;
+import com.appdynamics.test.Check;
+import com.appdynamics.test.SampleController;
+import com.appdynamics.test.StubController;
+
+/**
+ * Runs queries of different applications on one toolkit from many threads at once and checks that every
+ * query gets the answer to its own request. Each answer of the stub names the application it is for.
+ */
+public class ConcurrentQueriesTest
+{
+	private static final int THREADS = 16;
+	private static final int QUERIES = 400;
+	private static final int APPLICATIONS = 8;
+
+	public static void main(String[] args) throws Exception
+	{
+		final SampleController sample = new SampleController(APPLICATIONS, 3, 4, 2, 5, 0);
+		StubController stub = new StubController(sample);
+		final RESTToolkit toolkit = new RESTToolkit("user@customer1", "secret", stub.getURL(), "");
+		final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+
+		try
+		{
+			Thread[] threads = new Thread[THREADS];
+			for (int i = 0; i < THREADS; i++)
+			{
+				final int thread = i;
+				threads[i] = new Thread(() ->
+				{
+					try
+					{
+						start.await();
+						for (int q = 0; q < QUERIES; q++)
+						{
+							query(toolkit, sample, (thread + q) % APPLICATIONS, q);
+						}
+					}
+					catch (Throwable e)
+					{
+						failures.add(e);
+					}
+				});
+				threads[i].start();
+			}
+			start.countDown();
+			for (Thread thread : threads)
+			{
+				thread.join();
+			}
+
+			if (!failures.isEmpty())
+			{
+				AssertionError error = new AssertionError(failures.size() + " of " + THREADS + " threads failed");
+				for (Throwable failure : failures)
+				{
+					error.addSuppressed(failure);
+				}
+				throw error;
+			}
+			// tier listings come from the topology cache, every other query makes one request
+			Check.equal(THREADS * QUERIES * 3 / 4, stub.getRequests() - topologyRequests(stub),
+					"Requests other than topology listings");
+			System.out.println("ConcurrentQueriesTest: " + THREADS * QUERIES + " queries on " + THREADS
+					+ " threads, " + toolkit.getPoolStatistics());
+		}
+		finally
+		{
+			toolkit.shutdown();
+			stub.stop();
+		}
+	}
+
+	/**
+	 * Runs one of four kinds of query, chosen by q, and checks its answer
+	 */
+	private static void query(RESTToolkit toolkit, SampleController sample, int a, int q) throws Exception
+	{
+		String app = SampleController.appName(a);
+		switch (q % 4)
+		{
+		case 0:
+			ArrayList<ADEvent> events = toolkit.getEvents(app, 15, "STALL", "WARN");
+			Check.equal(sample.eventCount(a), events.size(), "Events of " + app);
+			for (ADEvent event : events)
+			{
+				Check.equal(app, event.summary, "Summary of an event of " + app);
+			}
+			break;
+		case 1:
+			checkMetrics(toolkit.getARTForApp(app, 15, true), a,
+					MetricPaths.appMetric(MetricPaths.AVERAGE_RESPONSE_TIME));
+			break;
+		case 2:
+			int t = q % 3;
+			String BT = SampleController.btName(a, t, q % 4);
+			checkMetrics(toolkit.getARTForBT(app, BT, 15, true), a,
+					MetricPaths.btMetric(SampleController.tierName(a, t), BT, MetricPaths.NORMAL_AVERAGE_RESPONSE_TIME));
+			break;
+		default:
+			ArrayList<ADTier> tiers = toolkit.getTiersFromApp(app);
+			Check.equal(3, tiers.size(), "Tiers of " + app);
+			for (ADTier tier : tiers)
+			{
+				Check.that(tier.name.startsWith("Tier " + a + "."), tier.name + " is not a tier of " + app);
+			}
+			break;
+		}
+	}
+
+	private static void checkMetrics(ArrayList<ADMetric> metrics, int a, String metricPath)
+	{
+		Check.equal(1, metrics.size(), "Values of " + metricPath);
+		Check.equal((long) a, metrics.get(0).value, "Application of " + metricPath);
+		Check.equal((long) metricPath.hashCode(), metrics.get(0).current, "Metric path of " + metricPath);
+	}
+
+	/**
+	 * Counts the listings loaded into the topology cache, which are made once per application and not
+	 * once per query
+	 */
+	private static int topologyRequests(StubController stub)
+	{
+		int requests = stub.getRequests("/controller/rest/applications");
+		for (int a = 0; a < APPLICATIONS; a++)
+		{
+			String app = "/controller/rest/applications/" + SampleController.appName(a);
+			requests += stub.getRequests(app + "/tiers") + stub.getRequests(app + "/business-transactions")
+					+ stub.getRequests(app + "/nodes");
+		}
+		return requests;
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.REST;
+
+import com.appdynamics.test.Check;
+import com.appdynamics.test.SampleController;
+import com.appdynamics.test.StubController;
+
+/**
+ * Counts the requests each business transaction and metric query makes. A metric query makes one
+ * metric-data request, and the business transaction listing it needs to find the tier of a business
+ * transaction is fetched once per application however many queries use it.
+ */
+public class TopologyRequestsTest
+{
+	private static final int APPLICATIONS = 3;
+	private static final int TIERS = 4;
+	private static final int BTS = 5;
+	private static final String APPLICATIONS_PATH = "/controller/rest/applications";
+
+	public static void main(String[] args) throws Exception
+	{
+		StubController stub = new StubController(new SampleController(APPLICATIONS, TIERS, BTS, 2, 1, 0));
+		RESTToolkit toolkit = new RESTToolkit("user@customer1", "secret", stub.getURL(), "");
+		try
+		{
+			btMetrics(toolkit, stub);
+			otherMetrics(toolkit, stub);
+			btListings(toolkit, stub);
+			invalidation(toolkit, stub);
+			System.out.println("TopologyRequestsTest: " + toolkit.getTopologyCache().getStatistics());
+		}
+		finally
+		{
+			toolkit.shutdown();
+			stub.stop();
+		}
+	}
+
+	/**
+	 * Each business transaction metric query makes one metric-data request, after the first query of an
+	 * application has fetched its business transactions
+	 */
+	private static void btMetrics(RESTToolkit toolkit, StubController stub) throws Exception
+	{
+		stub.reset();
+		long now = System.currentTimeMillis();
+		int queries = 0;
+		for (int a = 0; a < APPLICATIONS; a++)
+		{
+			String app = SampleController.appName(a);
+			for (int t = 0; t < TIERS; t++)
+			{
+				for (int b = 0; b < BTS; b++)
+				{
+					String BT = SampleController.btName(a, t, b);
+					String path = MetricPaths.btMetric(SampleController.tierName(a, t), BT,
+							MetricPaths.NORMAL_AVERAGE_RESPONSE_TIME);
+					Check.equal((long) path.hashCode(), toolkit.getARTForBT(app, BT, 15, true).get(0).current,
+							"Metric path of " + BT);
+					toolkit.getARTForBT(app, BT, now - 900000, now, true);
+					toolkit.getLoadForBT(app, BT, 15, true);
+					toolkit.getLoadForBT(app, BT, now - 900000, now, true);
+					toolkit.getErrorsForBT(app, BT, 15, true);
+					toolkit.getErrorsForBT(app, BT, now - 900000, now, true);
+					queries += 6;
+				}
+			}
+			Check.equal(1, stub.getRequests(appPath(a) + "/business-transactions"),
+					"Business transaction listings of " + app);
+			Check.equal(0, stub.getRequests(appPath(a) + "/tiers"), "Tier listings of " + app);
+		}
+		Check.equal(queries, metricRequests(stub), "Metric-data requests of the business transaction queries");
+		Check.equal(queries + APPLICATIONS, stub.getRequests(), "Requests of the business transaction queries");
+	}
+
+	/**
+	 * Application and tier metric queries need no topology and make one request each
+	 */
+	private static void otherMetrics(RESTToolkit toolkit, StubController stub) throws Exception
+	{
+		stub.reset();
+		String app = SampleController.appName(1);
+		String tier = SampleController.tierName(1, 2);
+		toolkit.getARTForApp(app, 15, true);
+		toolkit.getLoadForApp(app, 15, true);
+		toolkit.getErrorsForApp(app, 15, true);
+		toolkit.getARTForTier(app, tier, 15, true);
+		toolkit.getLoadForTier(app, tier, 15, true);
+		toolkit.getErrorsForTier(app, tier, 15, true);
+		Check.equal(6, stub.getRequests(), "Requests of the application and tier metric queries");
+	}
+
+	/**
+	 * The business transaction listings across applications are crawled once, and the listings already
+	 * fetched by the metric queries are not fetched again
+	 */
+	private static void btListings(RESTToolkit toolkit, StubController stub) throws Exception
+	{
+		stub.reset();
+		for (int i = 0; i < 10; i++)
+		{
+			Check.equal(APPLICATIONS * TIERS * BTS, toolkit.getBTs().size(), "Business transactions");
+			for (int a = 0; a < APPLICATIONS; a++)
+			{
+				for (int t = 0; t < TIERS; t++)
+				{
+					Check.equal(BTS, toolkit.getBTsFromTier(SampleController.tierName(a, t)).size(),
+							"Business transactions of " + SampleController.tierName(a, t));
+				}
+				Check.equal(TIERS * BTS, toolkit.getBTsFromApp(SampleController.appName(a)).size(),
+						"Business transactions of " + SampleController.appName(a));
+			}
+		}
+		Check.equal(1, stub.getRequests(APPLICATIONS_PATH), "Application listings of the crawl");
+		Check.equal(1, stub.getRequests(), "Requests of the business transaction listings");
+	}
+
+	/**
+	 * After the topology is invalidated the next business transaction metric query fetches the listing
+	 * again, once
+	 */
+	private static void invalidation(RESTToolkit toolkit, StubController stub) throws Exception
+	{
+		toolkit.invalidateTopology();
+		stub.reset();
+		String app = SampleController.appName(2);
+		for (int b = 0; b < BTS; b++)
+		{
+			toolkit.getARTForBT(app, SampleController.btName(2, 0, b), 15, true);
+		}
+		Check.equal(1, stub.getRequests(appPath(2) + "/business-transactions"),
+				"Business transaction listings after invalidation");
+		Check.equal(BTS + 1, stub.getRequests(), "Requests after invalidation");
+	}
+
+	private static String appPath(int a)
+	{
+		return APPLICATIONS_PATH + "/" + SampleController.appName(a);
+	}
+
+	private static int metricRequests(StubController stub)
+	{
+		int requests = 0;
+		for (int a = 0; a < APPLICATIONS; a++)
+		{
+			requests += stub.getRequests(appPath(a) + "/metric-data");
+		}
+		return requests;
+	}
+}
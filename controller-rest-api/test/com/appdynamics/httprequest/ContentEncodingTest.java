@@ -0,0 +1,116 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import com.appdynamics.test.Check;
+import com.appdynamics.test.SampleController;
+import com.appdynamics.test.StubController;
+
+/**
+ * Fetches the same response sent as it is, gzipped and deflated, and checks that every way of reading it
+ * gives the same text while fewer bytes are received for the compressed ones.
+ */
+public class ContentEncodingTest
+{
+	private static final String EVENTS = "/controller/rest/applications/App%200/events";
+
+	public static void main(String[] args) throws Exception
+	{
+		SampleController sample = new SampleController(1, 1, 1, 1, 200, 200);
+		String expected = sample.respond("/controller/rest/applications/App 0/events",
+				Collections.<String, String>emptyMap());
+		int identity = expected.getBytes(StandardCharsets.UTF_8).length;
+
+		StubController stub = new StubController(sample);
+		try
+		{
+			Check.equal((long) identity, fetch(stub, null, expected), "Bytes received without compression");
+			long gzip = fetch(stub, "gzip", expected);
+			long deflate = fetch(stub, "deflate", expected);
+			Check.that(gzip * 2 < identity, "Gzip received " + gzip + " of " + identity + " bytes");
+			Check.that(deflate * 2 < identity, "Deflate received " + deflate + " of " + identity + " bytes");
+			System.out.println("ContentEncodingTest: received " + identity + " bytes as they are, " + gzip
+					+ " gzipped and " + deflate + " deflated");
+		}
+		finally
+		{
+			stub.stop();
+		}
+	}
+
+	/**
+	 * Reads the response with the pooled transport, as a string and as a stream, and with
+	 * HTTPRequestPoster
+	 * @return		Body bytes the transport received for one response
+	 */
+	private static long fetch(StubController stub, String encoding, String expected) throws Exception
+	{
+		stub.setContentEncoding(encoding);
+		stub.reset();
+		String name = encoding == null ? "identity" : encoding;
+		String endpoint = stub.getURL() + EVENTS;
+
+		PooledHTTPTransport transport = new PooledHTTPTransport("user@customer1", "secret");
+		try
+		{
+			Check.equal(expected, transport.sendGetRequest(endpoint, "output=JSON"), "Text of the " + name + " body");
+			long received = transport.getPoolStatistics().getReceived();
+			Check.equal(stub.getBytesSent(), received, "Bytes received of the " + name + " body");
+
+			InputStream in = transport.openGetStream(endpoint, "output=JSON");
+			try
+			{
+				Check.equal(expected, readText(in), "Stream of the " + name + " body");
+			}
+			finally
+			{
+				in.close();
+			}
+			Check.equal(2 * received, transport.getPoolStatistics().getReceived(),
+					"Bytes received of the " + name + " stream");
+
+			Check.equal(expected, HTTPRequestPoster.sendGetRequest(endpoint, "output=JSON"),
+					"Text of the " + name + " body read by HTTPRequestPoster");
+			Check.equal(3 * received, stub.getBytesSent(), "Bytes sent of the " + name + " bodies");
+			return received;
+		}
+		finally
+		{
+			transport.shutdown();
+		}
+	}
+
+	private static String readText(InputStream in) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) != -1)
+		{
+			bytes.write(buffer, 0, n);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
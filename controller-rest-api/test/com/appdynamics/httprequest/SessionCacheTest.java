@@ -0,0 +1,48 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import com.appdynamics.test.Check;
+
+/**
+ * Checks that HTTPRequestPoster keeps one set of session cookies per user, and only for the users who
+ * made the latest requests.
+ */
+public class SessionCacheTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		String first = PooledHTTPTransport.encodeCredentials("user0@customer1", "secret");
+		SessionCookies cookies = HTTPRequestPoster.getSessionCookies(first);
+		Check.that(cookies == HTTPRequestPoster.getSessionCookies(first), "Cookies of the same user differ");
+		Check.that(cookies != HTTPRequestPoster.getSessionCookies(
+				PooledHTTPTransport.encodeCredentials("user0@customer1", "other")), "Cookies shared across passwords");
+
+		for (int i = 1; i < HTTPRequestPoster.MAX_SESSIONS * 4; i++)
+		{
+			HTTPRequestPoster.getSessionCookies(PooledHTTPTransport.encodeCredentials("user" + i + "@customer1", "secret"));
+			// the first user keeps making requests
+			Check.that(cookies == HTTPRequestPoster.getSessionCookies(first), "Cookies of a recent user dropped");
+		}
+		Check.equal(HTTPRequestPoster.MAX_SESSIONS, HTTPRequestPoster.getSessionCount(), "Users with cookies");
+		System.out.println("SessionCacheTest: " + HTTPRequestPoster.getSessionCount() + " of "
+				+ HTTPRequestPoster.MAX_SESSIONS * 4 + " users kept");
+	}
+}
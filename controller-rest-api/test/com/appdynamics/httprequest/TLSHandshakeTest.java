@@ -0,0 +1,183 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.httprequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.appdynamics.test.Check;
+import com.appdynamics.test.SampleController;
+import com.appdynamics.test.StubController;
+
+/**
+ * Sends many requests from several threads to an HTTPS stub controller with a self-signed certificate made
+ * for the run, and checks that the pool makes one TLS handshake per connection and none per request. A
+ * second transport sharing the socket factory resumes the TLS session of the first instead of negotiating
+ * a new one.
+ */
+public class TLSHandshakeTest
+{
+	private static final int THREADS = 8;
+	private static final int REQUESTS = 50;
+	private static final int CONNECTIONS = 4;
+	private static final String PATH = "/controller/rest/applications";
+
+	public static void main(String[] args) throws Exception
+	{
+		char[] password = Long.toHexString(System.nanoTime()).toCharArray();
+		KeyStore keys = selfSignedKeyStore(password);
+
+		KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagers.init(keys, password);
+		SSLContext server = SSLContext.getInstance("TLS");
+		server.init(keyManagers.getKeyManagers(), null, null);
+
+		TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagers.init(keys);
+		SSLContext client = SSLContext.getInstance("TLS");
+		client.init(null, trustManagers.getTrustManagers(), null);
+
+		StubController stub = new StubController(new SampleController(2, 1, 1, 1, 1, 0), server);
+		try
+		{
+			final String endpoint = stub.getURL() + PATH;
+			final PooledHTTPTransport transport = new PooledHTTPTransport("user@customer1", "secret", CONNECTIONS,
+					PooledHTTPTransport.DEFAULT_IDLE_TIMEOUT, client.getSocketFactory());
+			final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+			Thread[] threads = new Thread[THREADS];
+			for (int i = 0; i < THREADS; i++)
+			{
+				threads[i] = new Thread(() ->
+				{
+					try
+					{
+						for (int r = 0; r < REQUESTS; r++)
+						{
+							Check.that(transport.sendGetRequest(endpoint, "output=JSON").startsWith("[{\"id\":1,"),
+									"Unexpected application listing");
+						}
+					}
+					catch (Throwable e)
+					{
+						failures.add(e);
+					}
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads)
+			{
+				thread.join();
+			}
+			if (!failures.isEmpty())
+			{
+				throw new AssertionError("A request failed", failures.peek());
+			}
+
+			PoolStatistics statistics = transport.getPoolStatistics();
+			Check.equal((long) THREADS * REQUESTS, statistics.getRequests(), "Requests");
+			Check.equal(THREADS * REQUESTS, stub.getRequests(PATH), "Requests received by the stub");
+			Check.that(statistics.getCreated() <= CONNECTIONS, statistics.getCreated() + " connections opened");
+			Check.equal(statistics.getCreated(), statistics.getHandshakes(), "Handshakes per connection");
+			System.out.println("TLSHandshakeTest: " + statistics);
+
+			// the second transport finds the sessions of the first in the cache of the shared context
+			Thread.sleep(10);
+			PooledHTTPTransport resuming = new PooledHTTPTransport("user@customer1", "secret", CONNECTIONS,
+					PooledHTTPTransport.DEFAULT_IDLE_TIMEOUT, client.getSocketFactory());
+			try
+			{
+				for (int r = 0; r < REQUESTS; r++)
+				{
+					resuming.sendGetRequest(endpoint, "output=JSON");
+				}
+				PoolStatistics resumed = resuming.getPoolStatistics();
+				Check.equal(1L, resumed.getHandshakes(), "Handshakes of sequential requests");
+				Check.equal(1L, resumed.getResumed(), "Resumed sessions of the second transport");
+				System.out.println("TLSHandshakeTest: " + resumed);
+			}
+			finally
+			{
+				resuming.shutdown();
+				transport.shutdown();
+			}
+		}
+		finally
+		{
+			stub.stop();
+		}
+	}
+
+	/**
+	 * Makes a key pair and a self-signed certificate for 127.0.0.1 with the keytool of the running JVM,
+	 * in a temporary file that is deleted once loaded
+	 */
+	private static KeyStore selfSignedKeyStore(char[] password) throws Exception
+	{
+		File file = File.createTempFile("stub-controller", ".p12");
+		file.delete();
+		try
+		{
+			String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+			Process process = new ProcessBuilder(keytool, "-genkeypair", "-keyalg", "EC", "-keysize", "256",
+					"-alias", "stub", "-dname", "CN=127.0.0.1", "-ext", "san=ip:127.0.0.1", "-validity", "1",
+					"-storetype", "PKCS12", "-keystore", file.getPath(), "-storepass", new String(password),
+					"-keypass", new String(password)).redirectErrorStream(true).start();
+			String output = readText(process.getInputStream());
+			Check.equal(0, process.waitFor(), "Exit code of keytool, which printed " + output);
+
+			KeyStore keys = KeyStore.getInstance("PKCS12");
+			InputStream in = new FileInputStream(file);
+			try
+			{
+				keys.load(in, password);
+			}
+			finally
+			{
+				in.close();
+			}
+			return keys;
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	private static String readText(InputStream in) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) != -1)
+		{
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toString();
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.test;
+
+/**
+ * Assertions of the tests, which are plain main classes run by the ant test target
+ */
+public class Check
+{
+	private Check()
+	{
+	}
+
+	/**
+	 * @throws 	AssertionError	if condition is false
+	 */
+	public static void that(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new AssertionError(message);
+		}
+	}
+
+	/**
+	 * @throws 	AssertionError	if actual is not equal to expected
+	 */
+	public static void equal(Object expected, Object actual, String message)
+	{
+		if (expected == null ? actual != null : !expected.equals(actual))
+		{
+			throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+		}
+	}
+}
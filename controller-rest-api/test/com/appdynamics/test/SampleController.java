@@ -0,0 +1,243 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.test;
+
+import java.util.Map;
+
+/**
+ * Answers the REST API of a controller with a generated topology, for StubController.
+ *
+ * Application a is named "App a" and has the id a + 1. Each application has tiers "Tier a.t", each tier
+ * business transactions "BT a.t.b" and nodes "Node a.t.n". The events of an application all have its name
+ * as their summary, and every metric value of an application has its index as value and the hash code of
+ * the metric path asked for as current, so that an answer can be traced back to its query.
+ */
+public class SampleController implements StubController.Responder
+{
+	private static final String APPLICATIONS = "/controller/rest/applications";
+
+	private final int applications;
+	private final int tiers;
+	private final int BTs;
+	private final int nodes;
+	private final int events;
+	private final int eventPadding;
+
+	/**
+	 * @param 	applications	Number of applications
+	 * @param 	tiers			Number of tiers per application
+	 * @param 	BTs				Number of business transactions per tier
+	 * @param 	nodes			Number of nodes per tier
+	 * @param 	events			Number of events of application 0, application a has events + a
+	 * @param 	eventPadding	Length of the deep link URL of each event, to make event responses larger
+	 */
+	public SampleController(int applications, int tiers, int BTs, int nodes, int events, int eventPadding)
+	{
+		this.applications = applications;
+		this.tiers = tiers;
+		this.BTs = BTs;
+		this.nodes = nodes;
+		this.events = events;
+		this.eventPadding = eventPadding;
+	}
+
+	/**
+	 * @return		Name of application a
+	 */
+	public static String appName(int a)
+	{
+		return "App " + a;
+	}
+
+	/**
+	 * @return		Name of business transaction b of tier t of application a
+	 */
+	public static String btName(int a, int t, int b)
+	{
+		return "BT " + a + "." + t + "." + b;
+	}
+
+	/**
+	 * @return		Name of tier t of application a
+	 */
+	public static String tierName(int a, int t)
+	{
+		return "Tier " + a + "." + t;
+	}
+
+	/**
+	 * @return		Number of events of application a
+	 */
+	public int eventCount(int a)
+	{
+		return events + a;
+	}
+
+	public String respond(String path, Map<String, String> query)
+	{
+		if (path.equals(APPLICATIONS))
+		{
+			StringBuilder json = new StringBuilder("[");
+			for (int a = 0; a < applications; a++)
+			{
+				separate(json, a);
+				json.append("{\"id\":").append(a + 1).append(",\"name\":\"").append(appName(a))
+						.append("\",\"description\":\"\"}");
+			}
+			return json.append(']').toString();
+		}
+		if (!path.startsWith(APPLICATIONS + "/"))
+		{
+			return null;
+		}
+
+		String rest = path.substring(APPLICATIONS.length() + 1);
+		int slash = rest.indexOf('/');
+		int a = slash < 0 ? -1 : findApp(rest.substring(0, slash));
+		if (a < 0)
+		{
+			return null;
+		}
+
+		switch (rest.substring(slash + 1))
+		{
+		case "tiers":
+			return tiers(a);
+		case "business-transactions":
+			return BTs(a);
+		case "nodes":
+			return nodes(a);
+		case "events":
+			return events(a);
+		case "metric-data":
+			return metricData(a, query.get("metric-path"));
+		default:
+			return null;
+		}
+	}
+
+	private int findApp(String app)
+	{
+		for (int a = 0; a < applications; a++)
+		{
+			if (app.equals(appName(a)) || app.equals(Integer.toString(a + 1)))
+			{
+				return a;
+			}
+		}
+		return -1;
+	}
+
+	private String tiers(int a)
+	{
+		StringBuilder json = new StringBuilder("[");
+		for (int t = 0; t < tiers; t++)
+		{
+			separate(json, t);
+			json.append("{\"agentType\":\"APP_AGENT\",\"id\":").append(a * 100 + t)
+					.append(",\"description\":\"\",\"name\":\"").append(tierName(a, t))
+					.append("\",\"numberOfNodes\":").append(nodes).append(",\"type\":\"Application Server\"}");
+		}
+		return json.append(']').toString();
+	}
+
+	private String BTs(int a)
+	{
+		StringBuilder json = new StringBuilder("[");
+		int i = 0;
+		for (int t = 0; t < tiers; t++)
+		{
+			for (int b = 0; b < BTs; b++)
+			{
+				separate(json, i++);
+				json.append("{\"id\":").append(a * 10000 + t * 100 + b)
+						.append(",\"background\":false,\"entryPointType\":\"SERVLET\",\"internalName\":\"")
+						.append(btName(a, t, b)).append("\",\"name\":\"").append(btName(a, t, b))
+						.append("\",\"tierId\":").append(a * 100 + t).append(",\"tierName\":\"")
+						.append(tierName(a, t)).append("\"}");
+			}
+		}
+		return json.append(']').toString();
+	}
+
+	private String nodes(int a)
+	{
+		StringBuilder json = new StringBuilder("[");
+		int i = 0;
+		for (int t = 0; t < tiers; t++)
+		{
+			for (int n = 0; n < nodes; n++)
+			{
+				separate(json, i++);
+				json.append("{\"appAgentPresent\":true,\"appAgentVersion\":\"3.7\",\"id\":")
+						.append(a * 10000 + t * 100 + n)
+						.append(",\"machineAgentPresent\":false,\"machineAgentVersion\":\"\",\"machineId\":")
+						.append(n).append(",\"machineName\":\"host").append(n)
+						.append("\",\"machineOSType\":\"Linux\",\"name\":\"Node ").append(a).append('.').append(t)
+						.append('.').append(n).append("\",\"nodeUniqueLocalId\":\"\",\"tierId\":")
+						.append(a * 100 + t).append(",\"tierName\":\"").append(tierName(a, t))
+						.append("\",\"type\":\"Other\"}");
+			}
+		}
+		return json.append(']').toString();
+	}
+
+	private String events(int a)
+	{
+		StringBuilder padding = new StringBuilder();
+		for (int i = 0; i < eventPadding; i++)
+		{
+			padding.append((char) ('a' + i % 26));
+		}
+
+		StringBuilder json = new StringBuilder("[");
+		for (int e = 0; e < eventCount(a); e++)
+		{
+			separate(json, e);
+			json.append("{\"affectedEntities\":[{\"entityId\":").append(a * 100)
+					.append(",\"entityType\":\"APPLICATION_COMPONENT\"}],\"archived\":false,\"deepLinkUrl\":\"http://controller/")
+					.append(padding).append("\",\"eventTime\":").append(1380000000000L + e).append(",\"id\":")
+					.append(a * 100000 + e).append(",\"markedAsRead\":false,\"markedAsResolved\":false,")
+					.append("\"severity\":\"WARN\",\"subType\":\"\",\"summary\":\"").append(appName(a))
+					.append("\",\"triggeredEntity\":null,\"type\":\"STALL\"}");
+		}
+		return json.append(']').toString();
+	}
+
+	private String metricData(int a, String metricPath)
+	{
+		if (metricPath == null)
+		{
+			return null;
+		}
+		return "[{\"frequency\":\"ONE_MIN\",\"metricId\":1,\"metricName\":\"metric\",\"metricPath\":\""
+				+ metricPath.replace("\\", "\\\\").replace("\"", "\\\"") + "\",\"metricValues\":[{\"count\":1,\"current\":"
+				+ metricPath.hashCode() + ",\"max\":0,\"min\":0,\"occurrences\":0,\"standardDeviation\":0,"
+				+ "\"startTimeInMillis\":1380000000000,\"sum\":" + a + ",\"useRange\":false,\"value\":" + a + "}]}]";
+	}
+
+	private static void separate(StringBuilder json, int index)
+	{
+		if (index > 0)
+		{
+			json.append(',');
+		}
+	}
+}
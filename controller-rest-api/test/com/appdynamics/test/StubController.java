@@ -0,0 +1,288 @@
+/**
+ * Copyright 2013 AppDynamics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package com.appdynamics.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * A controller REST API stand-in on a local port, for the tests and benchmarks.
+ *
+ * Every GET is answered with the JSON text the responder returns for its path and query, with a
+ * Content-Length. The stub counts the requests made for each path and the body bytes it sent, and can
+ * compress the bodies and delay its answers like a remote controller would.
+ */
+public class StubController
+{
+	/**
+	 * Makes the body of a response
+	 */
+	public interface Responder
+	{
+		/**
+		 * @param 	path		Path of the request, without the query
+		 * @param 	query		Decoded query parameters, in request order
+		 * @return				JSON text of the response, or null to answer 404
+		 */
+		String respond(String path, Map<String, String> query) throws IOException;
+	}
+
+	static
+	{
+		// without it the server waits for delayed acknowledgements between the head and body of each response
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+		{
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private volatile Responder responder;
+	private volatile String contentEncoding;
+	private volatile long delay;
+
+	/**
+	 * Starts a plain HTTP stub
+	 * @param 	responder	Makes the response bodies
+	 */
+	public StubController(Responder responder) throws IOException
+	{
+		this(responder, null);
+	}
+
+	/**
+	 * Starts an HTTPS stub, or a plain HTTP one if context is null
+	 * @param 	responder	Makes the response bodies
+	 * @param 	context		Holds the key and certificate of the server
+	 */
+	public StubController(Responder responder, SSLContext context) throws IOException
+	{
+		this.responder = responder;
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		if (context != null)
+		{
+			HttpsServer https = HttpsServer.create(address, 0);
+			https.setHttpsConfigurator(new HttpsConfigurator(context));
+			server = https;
+		}
+		else
+		{
+			server = HttpServer.create(address, 0);
+		}
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * @return		Controller URL to give the toolkit, without a trailing slash
+	 */
+	public String getURL()
+	{
+		return (server instanceof HttpsServer ? "https" : "http") + "://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Replaces the responder
+	 */
+	public void setResponder(Responder responder)
+	{
+		this.responder = responder;
+	}
+
+	/**
+	 * Compresses the bodies with gzip or deflate when the request accepts it, or sends them as they
+	 * are if encoding is null
+	 */
+	public void setContentEncoding(String encoding)
+	{
+		contentEncoding = encoding;
+	}
+
+	/**
+	 * Waits this long before answering each request
+	 */
+	public void setDelay(long millis)
+	{
+		delay = millis;
+	}
+
+	/**
+	 * @return		Number of requests made for a path since the last reset
+	 */
+	public int getRequests(String path)
+	{
+		AtomicInteger count = requests.get(path);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * @return		Number of requests made since the last reset
+	 */
+	public int getRequests()
+	{
+		int total = 0;
+		for (AtomicInteger count : requests.values())
+		{
+			total += count.get();
+		}
+		return total;
+	}
+
+	/**
+	 * @return		Body bytes sent since the last reset, after compression
+	 */
+	public long getBytesSent()
+	{
+		return bytesSent.get();
+	}
+
+	/**
+	 * Clears the request and byte counts
+	 */
+	public void reset()
+	{
+		requests.clear();
+		bytesSent.set(0);
+	}
+
+	/**
+	 * Stops the server at once
+	 */
+	public void stop()
+	{
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			String path = exchange.getRequestURI().getPath();
+			requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+			drain(exchange.getRequestBody());
+			if (delay > 0)
+			{
+				Thread.sleep(delay);
+			}
+
+			String json = responder.respond(path, parseQuery(exchange.getRequestURI().getRawQuery()));
+			if (json == null)
+			{
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			byte[] body = json.getBytes(StandardCharsets.UTF_8);
+			String encoding = contentEncoding;
+			String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (encoding != null && accepted != null && accepted.contains(encoding))
+			{
+				body = compress(body, encoding);
+				exchange.getResponseHeaders().set("Content-Encoding", encoding);
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+			// counted first, the client may read the whole body before write returns
+			bytesSent.addAndGet(body.length);
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			exchange.sendResponseHeaders(500, -1);
+			throw e;
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) throws IOException
+	{
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		if (query == null)
+		{
+			return parameters;
+		}
+		for (String parameter : query.split("&"))
+		{
+			if (parameter.isEmpty())
+			{
+				continue;
+			}
+			int equals = parameter.indexOf('=');
+			String name = equals < 0 ? parameter : parameter.substring(0, equals);
+			String value = equals < 0 ? "" : parameter.substring(equals + 1);
+			parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+		return parameters;
+	}
+
+	private static byte[] compress(byte[] body, String encoding) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes);
+		out.write(body);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static void drain(InputStream in) throws IOException
+	{
+		byte[] buffer = new byte[1024];
+		while (in.read(buffer) != -1)
+		{
+		}
+		in.close();
+	}
+}